@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks that the operations played during animations allocate no more than
+ * a budget of bytes each, so that a change that starts allocating in a loop,
+ * a new Cell per cell drawn say, fails the check instead of showing up later
+ * as GC pauses in the game. The operations are
+ *   move    - a tap as BoardLayout plays it: getPiece, canMove, removePiece,
+ *             Piece.move, addPiece, addUndoMove, getPiece of the merged piece
+ *             and isFinishPiece
+ *   undo    - undoMove, with the piece moved back as BoardLayout does
+ *   redo    - redoMove, with the piece moved again as BoardLayout does
+ *   restart - restartGame after a few moves, which labels the pieces of the
+ *             starting board again
+ *   frame   - one BlocksView frame: BoardRenderer.drawBoard of the whole
+ *             board on a recording canvas
+ *   journal - not an allocation, the bytes the move journal keeps per move
+ *             played, so that long games stay small
+ *
+ * Bytes are counted by the JVM for the running thread, averaged over many
+ * operations after the JIT has warmed up. ART does not remove allocations the
+ * way the HotSpot JIT can, so run with -XX:-DoEscapeAnalysis to count what
+ * the device would allocate.
+ *
+ * The run prints bytes per operation against the budget, and exits with 1 if
+ * any budget is exceeded. Budgets are set with -budget op=bytes, once per
+ * operation. The board is a level file given with -level, or a synthetic
+ * board of -size and -density.
+ *
+ * Usage: AllocationBudgets [-level file.xml] [-size n] [-density percent]
+ * [-operations n] [-budget op=bytes] ... [-seed n]
+ *
+ * @author Tom
+ */
+public final class AllocationBudgets {
+
+    /* moves played before each restart */
+    private static final int RESTART_MOVES = 8;
+
+    /* the most bytes allowed per operation, by operation */
+    private final Map<String, Long> mBudgets = new LinkedHashMap<String, Long>();
+
+    private String mLevel;
+    private int mSize = 32;
+    private int mDensity = 50;
+    private int mOperations = 20000;
+    private long mSeed = 1;
+
+    private final com.sun.management.ThreadMXBean mThreads;
+    private final long mThreadId = Thread.currentThread().getId();
+
+    private AllocationBudgets() {
+        mBudgets.put("move", 1024L);
+        mBudgets.put("undo", 512L);
+        mBudgets.put("redo", 512L);
+        mBudgets.put("restart", 16384L);
+        mBudgets.put("frame", 0L);
+        mBudgets.put("journal", 64L);
+
+        mThreads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        mThreads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    public static void main(String[] args) throws IOException {
+        AllocationBudgets budgets = new AllocationBudgets();
+        budgets.parse(args);
+        if (!budgets.run())
+            System.exit(1);
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String name = args[i];
+            String value = args[i + 1];
+            if (name.equals("-level"))
+                mLevel = value;
+            else if (name.equals("-size"))
+                mSize = Integer.parseInt(value);
+            else if (name.equals("-density"))
+                mDensity = Integer.parseInt(value);
+            else if (name.equals("-operations"))
+                mOperations = Integer.parseInt(value);
+            else if (name.equals("-seed"))
+                mSeed = Long.parseLong(value);
+            else if (name.equals("-budget"))
+                setBudget(value);
+            else
+                throw new IllegalArgumentException("unknown option " + name);
+        }
+    }
+
+    /* Sets a budget given as op=bytes */
+    private void setBudget(String value) {
+        String[] budget = value.split("=");
+        if (budget.length != 2 || !mBudgets.containsKey(budget[0]))
+            throw new IllegalArgumentException("illegal budget " + value);
+        mBudgets.put(budget[0], Long.parseLong(budget[1]));
+    }
+
+    /* Returns false if a budget was exceeded */
+    private boolean run() throws IOException {
+        if (!ManagementFactory.getRuntimeMXBean().getInputArguments().contains(
+                "-XX:-DoEscapeAnalysis"))
+            System.out.println("note: escape analysis is on, allocations the JIT removes"
+                    + " are not counted");
+
+        Game game = createGame();
+        game.addObserver(new UndoPlayer(game));
+        System.out.println(game.getRows() + "x" + game.getColumns() + " board, "
+                + mOperations + " operations each");
+
+        List<Cell> movable = new ArrayList<Cell>();
+        for (Piece piece : game.getMovablePieces())
+            movable.add(piece.getFirstCell());
+        if (movable.isEmpty())
+            throw new IllegalStateException("no piece can move");
+
+        /* one untimed pass for the JIT, then the counted pass */
+        measure(game, movable);
+        Map<String, Double> bytes = measure(game, movable);
+
+        boolean passed = true;
+        System.out.println(String.format("%-10s %12s %12s", "operation", "bytes/op",
+                "budget"));
+        for (Map.Entry<String, Long> budget : mBudgets.entrySet()) {
+            double used = bytes.get(budget.getKey());
+            boolean over = used > budget.getValue();
+            System.out.println(String.format("%-10s %12.1f %12d%s", budget.getKey(), used,
+                    budget.getValue(), over ? "  OVER BUDGET" : ""));
+            passed &= !over;
+        }
+        return passed;
+    }
+
+    private Game createGame() throws IOException {
+        if (mLevel != null) {
+            InputStream in = new FileInputStream(mLevel);
+            try {
+                return Game.createFromStream(in);
+            } finally {
+                in.close();
+            }
+        }
+
+        SyntheticBoards board = new SyntheticBoards(new Random(mSeed), mSize, mDensity, 4,
+                SyntheticBoards.PieceSizes.parse("geometric:4"));
+        return Game.createFromState("budgets", board.getState(), board.getFinishPiece());
+    }
+
+    /* Returns the bytes allocated per operation, by operation */
+    private Map<String, Double> measure(Game game, List<Cell> movable) {
+        Map<String, Double> bytes = new LinkedHashMap<String, Double>();
+        long moveBytes = 0;
+        long undoBytes = 0;
+        long redoBytes = 0;
+        long moves = 0;
+
+        for (int i = 0; i < mOperations; ++i) {
+            Cell cell = movable.get(i % movable.size());
+
+            long before = allocated();
+            boolean moved = move(game, cell);
+            long after = allocated();
+            if (!moved)
+                continue;
+            game.undoMove();
+            long undone = allocated();
+            game.redoMove();
+            long redone = allocated();
+            game.undoMove();
+
+            moveBytes += after - before;
+            undoBytes += undone - after;
+            redoBytes += redone - undone;
+            ++moves;
+        }
+        bytes.put("move", moves == 0 ? 0 : (double) moveBytes / moves);
+        bytes.put("undo", moves == 0 ? 0 : (double) undoBytes / moves);
+        bytes.put("redo", moves == 0 ? 0 : (double) redoBytes / moves);
+
+        long restartBytes = 0;
+        int restarts = mOperations / RESTART_MOVES;
+        for (int i = 0; i < restarts; ++i) {
+            for (int j = 0; j < RESTART_MOVES; ++j)
+                move(game, movable.get((i + j) % movable.size()));
+            long before = allocated();
+            game.restartGame();
+            restartBytes += allocated() - before;
+        }
+        bytes.put("restart", restarts == 0 ? 0 : (double) restartBytes / restarts);
+
+        /* the pieces of a few taps, recorded in a journal of their own */
+        MoveJournal journal = new MoveJournal(game.getColumns());
+        for (int i = 0; i < RESTART_MOVES; ++i) {
+            Piece piece = game.getPiece(movable.get(i % movable.size()));
+            if (piece.canMove())
+                journal.add(piece);
+        }
+        bytes.put("journal", journal.size() == 0 ? 0 : (double) journal.getRecordBytes()
+                / journal.size());
+
+        BoardRenderer renderer = new BoardRenderer();
+        RecordingCanvas canvas = new RecordingCanvas();
+        long before = allocated();
+        for (int i = 0; i < mOperations; ++i)
+            renderer.drawBoard(game, 10, 10, canvas);
+        bytes.put("frame", (double) (allocated() - before) / mOperations);
+        if (canvas.getRects() == 0)
+            throw new IllegalStateException("nothing drawn");
+
+        return bytes;
+    }
+
+    /* Taps a cell as BoardLayout does, returning true if a piece moved */
+    private static boolean move(Game game, Cell cell) {
+        Piece piece = game.getPiece(cell);
+        if (!piece.canMove())
+            return false;
+
+        game.removePiece(piece);
+        piece.move();
+        game.addPiece(piece);
+        game.addUndoMove(piece);
+
+        Piece merged = game.getPiece(piece.getFirstCell());
+        if (game.isFinishPiece(merged))
+            game.setFinished();
+        return true;
+    }
+
+    private long allocated() {
+        return mThreads.getThreadAllocatedBytes(mThreadId);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+import java.util.Random;
+
+/**
+ * Random boards for the benchmarks. Boards are made the same way for every
+ * benchmark, so that results for the same parameters can be compared.
+ *
+ * @author Tom
+ */
+final class BenchmarkBoards {
+
+    /* the seed of every board */
+    static final long SEED = 1;
+
+    private BenchmarkBoards() {
+    }
+
+    /**
+     * Creates a random board
+     *
+     * @param random the random number source
+     * @param size number of rows and columns
+     * @param density percentage of cells that hold a piece
+     * @param types number of piece types
+     * @return the board, by row then column
+     */
+    static int[][] createState(Random random, int size, int density, int types) {
+        int[][] state = new int[size][size];
+        for (int row = 0; row < size; ++row) {
+            for (int column = 0; column < size; ++column) {
+                state[row][column] = random.nextInt(100) < density ? Game.CELL_STATE_MIN
+                        + random.nextInt(types) : Game.CELL_EMPTY;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Creates a game on a random board with at least one movable piece. The
+     * finish piece is one of the pieces on the board, so that finish tests
+     * compare pieces of realistic size.
+     *
+     * @param size number of rows and columns
+     * @param density percentage of cells that hold a piece
+     * @param types number of piece types
+     * @param engine the storage engine for the game board
+     * @return the game
+     */
+    static Game createGame(int size, int density, int types, Game.Engine engine) {
+        Random random = new Random(SEED);
+        while (true) {
+            int[][] state = createState(random, size, density, types);
+
+            /* any piece will do as the finish piece until one is picked */
+            Piece anyPiece = new Piece();
+            anyPiece.mState = Game.CELL_STATE_MIN;
+            anyPiece.addCell(0, 0);
+            Game game = Game.createFromState("benchmark", state, anyPiece, engine);
+            if (game.getMovablePieces().isEmpty())
+                continue;
+
+            Piece finishPiece = game.getPiece(new Cell(random.nextInt(size), random.nextInt(size)));
+            if (finishPiece.getCellCount() == 0)
+                finishPiece = game.getMovablePieces().get(0);
+            return Game.createFromState("benchmark", state, finishPiece, engine);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jdt.blocks.Game.Direction;
+
+/**
+ * Benchmarks of the board engines behind Game.getCellMobility, the distance
+ * from a cell to the nearest barrier, which Game asks of every boundary cell
+ * of a piece. Every cell is asked in every direction in turn.
+ *
+ * @author Tom
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    @Param({ "8", "32", "128" })
+    public int size;
+
+    @Param({ "30", "60" })
+    public int density;
+
+    @Param({ "ARRAY", "BITBOARD" })
+    public Game.Engine engine;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private Board mBoard;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        int[][] state = BenchmarkBoards.createState(new Random(BenchmarkBoards.SEED), size,
+                density, 2);
+        mBoard = engine == Game.Engine.BITBOARD ? new BitBoard(state, size, size)
+                : new ArrayBoard(state, size, size);
+    }
+
+    @Benchmark
+    public int getCellMobility() {
+        int next = mNext;
+        if (++mNext == size * size * DIRECTIONS.length)
+            mNext = 0;
+
+        int cell = next >> 2;
+        return mBoard.getCellMobility(cell / size, cell % size, DIRECTIONS[next & 3]);
+    }
+}
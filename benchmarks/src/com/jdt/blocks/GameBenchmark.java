@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the Game operations a tap goes through, over board size,
+ * density (percentage of cells holding a piece), number of piece types and
+ * board engine.
+ *
+ * tapToMerge is the whole path of a tap, as BoardLayout plays it: getPiece,
+ * canMove, removePiece, Piece.move, addPiece, getPiece of the merged piece and
+ * isFinishPiece. Each operation then moves the piece back the way
+ * restartGame does, so that every tap starts from the same board; an
+ * operation is therefore a tap and its reversal.
+ *
+ * @author Tom
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+    @Param({ "8", "32", "128" })
+    public int size;
+
+    @Param({ "30", "60" })
+    public int density;
+
+    @Param({ "2", "4" })
+    public int types;
+
+    @Param({ "ARRAY", "BITBOARD" })
+    public Game.Engine engine;
+
+    private Game mGame;
+    /* a cell of every piece, and of every movable piece, tapped in turn */
+    private Cell[] mPieceCells;
+    private Cell[] mMovableCells;
+    private int mNextPiece;
+    private int mNextMovable;
+
+    @Setup
+    public void setUp() {
+        mGame = BenchmarkBoards.createGame(size, density, types, engine);
+
+        List<Cell> cells = new ArrayList<Cell>();
+        for (int row = 0; row < size; ++row) {
+            for (int column = 0; column < size; ++column) {
+                Cell cell = new Cell(row, column);
+                if (mGame.isCellPiece(cell))
+                    cells.add(cell);
+            }
+        }
+        mPieceCells = cells.toArray(new Cell[cells.size()]);
+
+        cells.clear();
+        for (Piece piece : mGame.getMovablePieces())
+            cells.add(piece.getFirstCell());
+        mMovableCells = cells.toArray(new Cell[cells.size()]);
+    }
+
+    @Benchmark
+    public Piece getPiece() {
+        Cell cell = mPieceCells[mNextPiece];
+        if (++mNextPiece == mPieceCells.length)
+            mNextPiece = 0;
+        return mGame.getPiece(cell);
+    }
+
+    @Benchmark
+    public List<Piece> getMovablePieces() {
+        return mGame.getMovablePieces();
+    }
+
+    @Benchmark
+    public boolean tapToMerge() {
+        Cell cell = mMovableCells[mNextMovable];
+        if (++mNextMovable == mMovableCells.length)
+            mNextMovable = 0;
+
+        Piece piece = mGame.getPiece(cell);
+        if (!piece.canMove())
+            throw new IllegalStateException("the board changed");
+
+        mGame.removePiece(piece);
+        piece.move();
+        mGame.addPiece(piece);
+
+        Piece merged = mGame.getPiece(piece.getFirstCell());
+        boolean finished = mGame.isFinishPiece(merged);
+
+        /* move the piece back */
+        piece.mMobility.reverse();
+        mGame.removePiece(piece);
+        piece.move();
+        mGame.addPiece(piece);
+
+        return finished;
+    }
+}
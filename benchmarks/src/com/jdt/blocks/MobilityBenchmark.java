@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the mobility scans on large boards, through the Game, for
+ * each board engine. getPiece looks up the piece of an occupied cell, which
+ * scans from every boundary cell of the piece. move moves a movable piece
+ * and back, which also scans from the moved cells to find the pieces whose
+ * mobility changed, and looks up the piece at its new place.
+ *
+ * @author Tom
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MobilityBenchmark {
+
+    @Param({ "100", "200", "400", "800" })
+    public int size;
+
+    @Param({ "15", "45" })
+    public int density;
+
+    @Param({ "ARRAY", "BITBOARD" })
+    public Game.Engine engine;
+
+    private Game mGame;
+    /* a cell of every piece, and of some movable pieces, used in turn */
+    private Cell[] mPieceCells;
+    private Cell[] mMovableCells;
+    private int mNextPiece;
+    private int mNextMovable;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkBoards.SEED);
+        SyntheticBoards board = new SyntheticBoards(random, size, density, 4,
+                SyntheticBoards.PieceSizes.parse("uniform:1-16"));
+        mGame = Game.createFromState("mobility", board.getState(), board.getFinishPiece(),
+                engine);
+
+        List<Cell> cells = new ArrayList<Cell>();
+        for (int row = 0; row < size; ++row) {
+            for (int column = 0; column < size; ++column) {
+                Cell cell = new Cell(row, column);
+                if (mGame.isCellPiece(cell))
+                    cells.add(cell);
+            }
+        }
+        Collections.shuffle(cells, random);
+        mPieceCells = cells.toArray(new Cell[cells.size()]);
+
+        cells.clear();
+        for (Piece piece : mGame.getMovablePieces())
+            cells.add(piece.getFirstCell());
+        if (cells.isEmpty())
+            throw new IllegalStateException("no movable piece");
+        Collections.shuffle(cells, random);
+        mMovableCells = cells.subList(0, Math.min(256, cells.size())).toArray(new Cell[0]);
+    }
+
+    @Benchmark
+    public Piece getPiece() {
+        Cell cell = mPieceCells[mNextPiece];
+        if (++mNextPiece == mPieceCells.length)
+            mNextPiece = 0;
+        return mGame.getPiece(cell);
+    }
+
+    @Benchmark
+    public Piece move() {
+        Cell cell = mMovableCells[mNextMovable];
+        if (++mNextMovable == mMovableCells.length)
+            mNextMovable = 0;
+
+        Piece piece = mGame.getPiece(cell);
+        mGame.removePiece(piece);
+        piece.move();
+        mGame.addPiece(piece);
+
+        Piece moved = mGame.getPiece(piece.getFirstCell());
+
+        /* move the piece back */
+        piece.mMobility.reverse();
+        mGame.removePiece(piece);
+        piece.move();
+        mGame.addPiece(piece);
+
+        return moved;
+    }
+}
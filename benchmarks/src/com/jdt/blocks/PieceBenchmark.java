@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jdt.blocks.Game.Direction;
+
+/**
+ * Benchmarks of Piece and Mobility over the number of cells of a piece. The
+ * piece is a square block, or as near to one as the cell count allows.
+ *
+ * @author Tom
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceBenchmark {
+
+    @Param({ "1", "4", "16", "64" })
+    public int cells;
+
+    private Piece mPiece;
+    private Mobility mMobility;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        int width = (int) Math.ceil(Math.sqrt(cells));
+
+        mPiece = new Piece();
+        mPiece.mState = Game.CELL_STATE_MIN;
+        for (int i = 0; i < cells; ++i)
+            mPiece.addCell(i / width, i % width);
+
+        /* free to move three columns right */
+        mPiece.mMobility.setMobility(0, Direction.UP);
+        mPiece.mMobility.setMobility(0, Direction.DOWN);
+        mPiece.mMobility.setMobility(0, Direction.LEFT);
+        mPiece.mMobility.setMobility(3, Direction.RIGHT);
+
+        mMobility = new Mobility();
+    }
+
+    /* moves the piece, back and forth on alternate calls */
+    @Benchmark
+    public int move() {
+        mPiece.move();
+        mPiece.mMobility.reverse();
+        return mPiece.getCellColumn(0);
+    }
+
+    @Benchmark
+    public Object clonePiece() throws CloneNotSupportedException {
+        return mPiece.clone();
+    }
+
+    /* determines the mobility of a piece from four boundary cells, as Game does */
+    @Benchmark
+    public boolean setMobility() {
+        int next = ++mNext & 7;
+        mMobility.reset();
+        mMobility.setMobility(next & 1, Direction.UP);
+        mMobility.setMobility(next & 2, Direction.DOWN);
+        mMobility.setMobility(next & 4, Direction.LEFT);
+        mMobility.setMobility(next, Direction.RIGHT);
+        return mMobility.canMove();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+/**
+ * A BoardCanvas that records what is drawn as counts and a checksum, without
+ * allocating, standing in for the Android canvas off the device
+ *
+ * @author Tom
+ */
+final class RecordingCanvas implements BoardCanvas {
+
+    private long mRects;
+    private long mLines;
+    private double mChecksum;
+
+    public void fillRect(float left, float top, float right, float bottom, int color, int alpha) {
+        ++mRects;
+        mChecksum += left + 3 * top + 5 * right + 7 * bottom + color + alpha;
+    }
+
+    public void drawLine(float startX, float startY, float stopX, float stopY, int color,
+            int alpha) {
+        ++mLines;
+        mChecksum += startX + 3 * startY + 5 * stopX + 7 * stopY + color + alpha;
+    }
+
+    /** Returns the number of rectangles drawn */
+    long getRects() {
+        return mRects;
+    }
+
+    /** Returns the number of lines drawn */
+    long getLines() {
+        return mLines;
+    }
+
+    /** Returns a sum over everything drawn */
+    double getChecksum() {
+        return mChecksum;
+    }
+}
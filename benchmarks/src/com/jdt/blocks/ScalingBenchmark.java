@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how the cost of the engine operations grows with board size, on
+ * synthetic boards from 8x8 up to 4096x4096, doubling the side each step.
+ * For each size it reports the time of each operation, then the growth
+ * exponent k of each operation, fitted to time ~ cells^k: about 0 for an
+ * operation whose cost does not depend on the board size, 1 for one that
+ * scans the board. A change that turns a local operation into a board scan
+ * shows up as a jump in k however fast the machine is.
+ *
+ * The operations are
+ *   create   - Game.createFromState
+ *   lookup   - getPiece of a random occupied cell, which also finds the
+ *              mobility of the piece
+ *   movable  - getMovablePieces after a batch of moves; every movable piece
+ *              is in the result, so k near 1 is expected
+ *   move     - a tap: getPiece, canMove, removePiece, Piece.move, addPiece
+ *   undo     - undoMove, with the piece moved back as BoardLayout does
+ *   redo     - redoMove, with the piece moved again as BoardLayout does
+ *   restart  - restartGame after a batch of moves redone; the starting
+ *              board is copied back whatever the number of moves, so k near
+ *              1 is expected
+ *   finish   - isFinishPiece
+ *
+ * With -maxExponent the run fails when the exponent of any operation passes
+ * the limit, except create, movable and restart, which grow with the board by
+ * nature.
+ *
+ * Big boards need a big heap, about 3 GB for 4096x4096.
+ *
+ * Usage: ScalingBenchmark [-minSize n] [-maxSize n] [-density percent]
+ * [-types n] [-pieces fixed:n|uniform:min-max|geometric:mean]
+ * [-engine ARRAY|BITBOARD] [-moves n] [-minTime ms] [-maxExponent k]
+ * [-seed n]
+ *
+ * @author Tom
+ */
+public final class ScalingBenchmark {
+
+    private static final String[] OPERATIONS = { "create", "lookup", "movable", "move",
+            "undo", "redo", "restart", "finish" };
+    private static final int CREATE = 0;
+    private static final int LOOKUP = 1;
+    private static final int MOVABLE = 2;
+    private static final int MOVE = 3;
+    private static final int UNDO = 4;
+    private static final int REDO = 5;
+    private static final int RESTART = 6;
+    private static final int FINISH = 7;
+
+    /* occupied cells looked up in turn */
+    private static final int LOOKUP_CELLS = 1024;
+
+    private int mMinSize = 8;
+    private int mMaxSize = 4096;
+    private int mDensity = 50;
+    private int mTypes = 4;
+    private SyntheticBoards.PieceSizes mPieceSizes = SyntheticBoards.PieceSizes
+            .parse("geometric:4");
+    private Game.Engine mEngine = Game.Engine.ARRAY;
+    private int mMoves = 32;
+    private long mMinTime = 200;
+    private double mMaxExponent = Double.NaN;
+    private long mSeed = 1;
+
+    /* keeps results alive, so the JIT cannot drop the work */
+    private long mSink;
+
+    private ScalingBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        ScalingBenchmark benchmark = new ScalingBenchmark();
+        benchmark.parse(args);
+        if (!benchmark.run())
+            System.exit(1);
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String name = args[i];
+            String value = args[i + 1];
+            if (name.equals("-minSize"))
+                mMinSize = Integer.parseInt(value);
+            else if (name.equals("-maxSize"))
+                mMaxSize = Integer.parseInt(value);
+            else if (name.equals("-density"))
+                mDensity = Integer.parseInt(value);
+            else if (name.equals("-types"))
+                mTypes = Integer.parseInt(value);
+            else if (name.equals("-pieces"))
+                mPieceSizes = SyntheticBoards.PieceSizes.parse(value);
+            else if (name.equals("-engine"))
+                mEngine = Game.Engine.valueOf(value);
+            else if (name.equals("-moves"))
+                mMoves = Integer.parseInt(value);
+            else if (name.equals("-minTime"))
+                mMinTime = Long.parseLong(value);
+            else if (name.equals("-maxExponent"))
+                mMaxExponent = Double.parseDouble(value);
+            else if (name.equals("-seed"))
+                mSeed = Long.parseLong(value);
+            else
+                throw new IllegalArgumentException("unknown option " + name);
+        }
+    }
+
+    /* Returns false if an exponent passed the limit */
+    private boolean run() {
+        System.out.println("density " + mDensity + "%, " + mTypes + " types, pieces "
+                + mPieceSizes + ", " + mEngine + " engine, " + mMoves + " moves per batch");
+
+        /* warm up on the smallest board */
+        measure(mMinSize);
+
+        List<Integer> sizes = new ArrayList<Integer>();
+        List<double[]> times = new ArrayList<double[]>();
+
+        StringBuilder header = new StringBuilder(String.format("%-10s %10s", "size", "cells"));
+        for (String operation : OPERATIONS)
+            header.append(String.format(" %12s", operation + " ns"));
+        System.out.println(header);
+
+        for (int size = mMinSize; size <= mMaxSize; size *= 2) {
+            double[] nanos = measure(size);
+            sizes.add(size);
+            times.add(nanos);
+
+            StringBuilder line = new StringBuilder(String.format("%-10s %10d", size + "x"
+                    + size, (long) size * size));
+            for (double time : nanos)
+                line.append(String.format(" %12.0f", time));
+            System.out.println(line);
+        }
+
+        return report(sizes, times);
+    }
+
+    /* Prints the growth exponents, fitted over all sizes and between steps */
+    private boolean report(List<Integer> sizes, List<double[]> times) {
+        boolean passed = true;
+
+        System.out.println();
+        System.out.println("growth exponent k, time ~ cells^k");
+        StringBuilder header = new StringBuilder(String.format("%-10s %8s", "operation", "fit"));
+        for (int i = 1; i < sizes.size(); ++i)
+            header.append(String.format(" %8s", "->" + sizes.get(i)));
+        System.out.println(header);
+
+        for (int op = 0; op < OPERATIONS.length; ++op) {
+            double[] x = new double[sizes.size()];
+            double[] y = new double[sizes.size()];
+            for (int i = 0; i < sizes.size(); ++i) {
+                x[i] = Math.log((double) sizes.get(i) * sizes.get(i));
+                y[i] = Math.log(Math.max(1, times.get(i)[op]));
+            }
+
+            double fit = slope(x, y);
+            StringBuilder line = new StringBuilder(String.format("%-10s %8.2f",
+                    OPERATIONS[op], fit));
+            for (int i = 1; i < sizes.size(); ++i)
+                line.append(String.format(" %8.2f", (y[i] - y[i - 1]) / (x[i] - x[i - 1])));
+
+            if (op != CREATE && op != MOVABLE && op != RESTART && fit > mMaxExponent) {
+                line.append("  over " + mMaxExponent);
+                passed = false;
+            }
+            System.out.println(line);
+        }
+        return passed;
+    }
+
+    /* Returns the least squares slope of y over x */
+    private static double slope(double[] x, double[] y) {
+        int n = x.length;
+        if (n < 2)
+            return Double.NaN;
+        double mx = 0;
+        double my = 0;
+        for (int i = 0; i < n; ++i) {
+            mx += x[i] / n;
+            my += y[i] / n;
+        }
+        double sxy = 0;
+        double sxx = 0;
+        for (int i = 0; i < n; ++i) {
+            sxy += (x[i] - mx) * (y[i] - my);
+            sxx += (x[i] - mx) * (x[i] - mx);
+        }
+        return sxy / sxx;
+    }
+
+    /* Measures every operation on one board size, returning ns per operation */
+    private double[] measure(int size) {
+        Random random = new Random(mSeed);
+        SyntheticBoards board = new SyntheticBoards(random, size, mDensity, mTypes, mPieceSizes);
+        double[] best = new double[OPERATIONS.length];
+        Arrays.fill(best, Double.MAX_VALUE);
+
+        /* create, at least twice, until the minimum time has passed */
+        Game game = null;
+        long spent = 0;
+        for (int round = 0; round < 2 || spent < mMinTime * 1000000L; ++round) {
+            /* let the last game go first, big boards need the heap */
+            game = null;
+            long start = System.nanoTime();
+            game = Game.createFromState("scaling", board.getState(), board.getFinishPiece(),
+                    mEngine);
+            long elapsed = System.nanoTime() - start;
+            best[CREATE] = Math.min(best[CREATE], elapsed);
+            spent += elapsed;
+        }
+        game.addObserver(new UndoPlayer(game));
+
+        Cell[] lookups = lookupCells(game, random, size);
+        Piece[] pieces = new Piece[lookups.length];
+        for (int i = 0; i < lookups.length; ++i)
+            pieces[i] = game.getPiece(lookups[i]);
+
+        best[LOOKUP] = measureLookup(game, lookups);
+        best[FINISH] = measureFinish(game, pieces);
+
+        /* the cells of movable pieces, tapped in a random order */
+        List<Cell> movable = new ArrayList<Cell>();
+        for (Piece piece : game.getMovablePieces())
+            movable.add(piece.getFirstCell());
+        Collections.shuffle(movable, random);
+        if (movable.size() > mMoves)
+            movable = movable.subList(0, mMoves);
+
+        spent = 0;
+        for (int round = 0; round < 3 || spent < mMinTime * 1000000L; ++round) {
+            long start = System.nanoTime();
+
+            /* a batch of moves */
+            long moveStart = System.nanoTime();
+            int moves = moveAll(game, movable);
+            long moveTime = System.nanoTime() - moveStart;
+
+            long movableStart = System.nanoTime();
+            mSink += game.getMovablePieces().size();
+            long movableTime = System.nanoTime() - movableStart;
+
+            /* undo them */
+            long undoStart = System.nanoTime();
+            while (game.canUndoMove())
+                game.undoMove();
+            long undoTime = System.nanoTime() - undoStart;
+
+            /* redo them, then restart */
+            long redoStart = System.nanoTime();
+            while (game.canRedoMove())
+                game.redoMove();
+            long redoTime = System.nanoTime() - redoStart;
+
+            long restartStart = System.nanoTime();
+            game.restartGame();
+            long restartTime = System.nanoTime() - restartStart;
+
+            if (moves > 0) {
+                best[MOVE] = Math.min(best[MOVE], (double) moveTime / moves);
+                best[UNDO] = Math.min(best[UNDO], (double) undoTime / moves);
+                best[REDO] = Math.min(best[REDO], (double) redoTime / moves);
+            }
+            best[MOVABLE] = Math.min(best[MOVABLE], movableTime);
+            best[RESTART] = Math.min(best[RESTART], restartTime);
+            spent += System.nanoTime() - start;
+        }
+
+        for (int op = 0; op < best.length; ++op) {
+            if (best[op] == Double.MAX_VALUE)
+                best[op] = Double.NaN;
+        }
+        return best;
+    }
+
+    /* Taps each cell in turn, returning the number of pieces moved */
+    private static int moveAll(Game game, List<Cell> cells) {
+        int moves = 0;
+        for (Cell cell : cells) {
+            Piece piece = game.getPiece(cell);
+            if (!piece.canMove())
+                continue;
+            game.removePiece(piece);
+            piece.move();
+            game.addPiece(piece);
+            game.addUndoMove(piece);
+            ++moves;
+        }
+        return moves;
+    }
+
+    private double measureLookup(Game game, Cell[] cells) {
+        double best = Double.MAX_VALUE;
+        long spent = 0;
+        for (int reps = cells.length; spent < mMinTime * 1000000L; reps *= 2) {
+            long start = System.nanoTime();
+            for (int i = 0; i < reps; ++i)
+                mSink += game.getPiece(cells[i % cells.length]).getCellCount();
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, (double) elapsed / reps);
+            spent += elapsed;
+        }
+        return best;
+    }
+
+    private double measureFinish(Game game, Piece[] pieces) {
+        double best = Double.MAX_VALUE;
+        long spent = 0;
+        for (int reps = pieces.length; spent < mMinTime * 1000000L; reps *= 2) {
+            long start = System.nanoTime();
+            for (int i = 0; i < reps; ++i) {
+                if (game.isFinishPiece(pieces[i % pieces.length]))
+                    ++mSink;
+            }
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, (double) elapsed / reps);
+            spent += elapsed;
+        }
+        return best;
+    }
+
+    /* Picks random occupied cells */
+    private static Cell[] lookupCells(Game game, Random random, int size) {
+        Cell[] cells = new Cell[LOOKUP_CELLS];
+        int count = 0;
+        for (int tries = 0; count < cells.length && tries < LOOKUP_CELLS * 100; ++tries) {
+            Cell cell = new Cell(random.nextInt(size), random.nextInt(size));
+            if (game.isCellPiece(cell))
+                cells[count++] = cell;
+        }
+        if (count == 0)
+            throw new IllegalStateException("empty board");
+        return Arrays.copyOf(cells, count);
+    }
+}
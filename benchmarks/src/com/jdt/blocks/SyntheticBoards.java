@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+import java.util.Random;
+
+/**
+ * Generates synthetic boards of any size, with a given density and
+ * distribution of piece sizes. Pieces are grown one at a time from a random
+ * empty cell by a random walk over empty cells, and given a type none of
+ * their neighbors have, so that each stays a separate piece while there are
+ * enough types. Generation takes time in proportion to the number of cells.
+ *
+ * @author Tom
+ */
+final class SyntheticBoards {
+
+    /* marks the cells of the piece being grown */
+    private static final int GROWING = -2;
+
+    /**
+     * A distribution of piece sizes, written as fixed:n, uniform:min-max or
+     * geometric:mean
+     */
+    static final class PieceSizes {
+        private final String mKind;
+        private final int mMin;
+        private final int mMax;
+        private final double mMean;
+
+        private PieceSizes(String kind, int min, int max, double mean) {
+            mKind = kind;
+            mMin = min;
+            mMax = max;
+            mMean = mean;
+        }
+
+        static PieceSizes parse(String text) {
+            String[] parts = text.split(":");
+            if (parts.length == 2 && parts[0].equals("fixed")) {
+                int size = Integer.parseInt(parts[1]);
+                return new PieceSizes("fixed", size, size, size);
+            }
+            if (parts.length == 2 && parts[0].equals("uniform")) {
+                String[] range = parts[1].split("-");
+                int min = Integer.parseInt(range[0]);
+                int max = Integer.parseInt(range[1]);
+                return new PieceSizes("uniform", min, max, (min + max) / 2.0);
+            }
+            if (parts.length == 2 && parts[0].equals("geometric")) {
+                double mean = Double.parseDouble(parts[1]);
+                return new PieceSizes("geometric", 1, Integer.MAX_VALUE, mean);
+            }
+            throw new IllegalArgumentException("illegal piece sizes " + text);
+        }
+
+        /** Returns a random piece size, at least 1 */
+        int next(Random random) {
+            int size;
+            if (mKind.equals("uniform")) {
+                size = mMin + random.nextInt(mMax - mMin + 1);
+            } else if (mKind.equals("geometric")) {
+                /* sizes 1, 2, 3 ... with probability falling by 1 - 1 / mean each step */
+                if (mMean <= 1)
+                    return 1;
+                double q = Math.log(1 - 1 / mMean);
+                size = 1 + (int) Math.min(Integer.MAX_VALUE - 1,
+                        Math.floor(Math.log(1 - random.nextDouble()) / q));
+            } else {
+                size = mMin;
+            }
+            return Math.max(1, size);
+        }
+
+        @Override
+        public String toString() {
+            if (mKind.equals("uniform"))
+                return mKind + ":" + mMin + "-" + mMax;
+            if (mKind.equals("geometric"))
+                return mKind + ":" + mMean;
+            return mKind + ":" + mMin;
+        }
+    }
+
+    private final int mSize;
+    private final int[][] mState;
+    private final Piece mFinishPiece;
+    private int mPieceCount;
+
+    /**
+     * Generates a board
+     *
+     * @param random the random number source
+     * @param size number of rows and columns
+     * @param density percentage of cells that hold a piece
+     * @param types number of piece types
+     * @param sizes the distribution of piece sizes
+     */
+    SyntheticBoards(Random random, int size, int density, int types, PieceSizes sizes) {
+        if (types < 1 || types > 30)
+            throw new IllegalArgumentException("illegal number of types");
+
+        mSize = size;
+        int count = size * size;
+        int target = (int) ((long) count * density / 100);
+        int[] cells = new int[count];
+        int[] piece = new int[Math.max(1, count)];
+        int pieceCount = 0;
+        int pieceType = Game.CELL_STATE_MIN;
+
+        int filled = 0;
+        while (filled < target) {
+            int start = random.nextInt(count);
+            if (cells[start] != Game.CELL_EMPTY)
+                continue;
+
+            /* grow the piece by a random walk over empty cells */
+            int want = Math.min(sizes.next(random), target - filled);
+            pieceCount = 1;
+            piece[0] = start;
+            cells[start] = GROWING;
+            for (int tries = want * 8; pieceCount < want && tries > 0; --tries) {
+                int cell = piece[random.nextInt(pieceCount)];
+                int neighbor = neighbor(cell, random.nextInt(4));
+                if (neighbor >= 0 && cells[neighbor] == Game.CELL_EMPTY) {
+                    cells[neighbor] = GROWING;
+                    piece[pieceCount++] = neighbor;
+                }
+            }
+
+            /* pick a type no neighbor has, if there is one */
+            int used = 0;
+            for (int i = 0; i < pieceCount; ++i) {
+                for (int direction = 0; direction < 4; ++direction) {
+                    int neighbor = neighbor(piece[i], direction);
+                    if (neighbor >= 0 && cells[neighbor] >= Game.CELL_STATE_MIN)
+                        used |= 1 << cells[neighbor];
+                }
+            }
+            int first = random.nextInt(types);
+            pieceType = Game.CELL_STATE_MIN + first;
+            for (int i = 0; i < types; ++i) {
+                int type = Game.CELL_STATE_MIN + (first + i) % types;
+                if ((used & (1 << type)) == 0) {
+                    pieceType = type;
+                    break;
+                }
+            }
+
+            for (int i = 0; i < pieceCount; ++i)
+                cells[piece[i]] = pieceType;
+            filled += pieceCount;
+            ++mPieceCount;
+        }
+
+        mState = new int[size][];
+        for (int row = 0; row < size; ++row) {
+            mState[row] = new int[size];
+            System.arraycopy(cells, row * size, mState[row], 0, size);
+        }
+
+        /* the last piece grown is the finish piece */
+        mFinishPiece = new Piece();
+        mFinishPiece.mState = pieceType;
+        for (int i = 0; i < pieceCount; ++i)
+            mFinishPiece.addCell(piece[i] / size, piece[i] % size);
+    }
+
+    /** Returns the board, by row then column */
+    int[][] getState() {
+        return mState;
+    }
+
+    /** Returns a piece to use as the finish piece */
+    Piece getFinishPiece() {
+        return mFinishPiece;
+    }
+
+    /** Returns the number of pieces grown, before any merged */
+    int getPieceCount() {
+        return mPieceCount;
+    }
+
+    /* Returns the cell next to a cell, up, down, left or right, or -1 off the board */
+    private int neighbor(int cell, int direction) {
+        int row = cell / mSize;
+        int column = cell - row * mSize;
+        switch (direction) {
+            case 0:
+                return row > 0 ? cell - mSize : -1;
+            case 1:
+                return row + 1 < mSize ? cell + mSize : -1;
+            case 2:
+                return column > 0 ? cell - 1 : -1;
+            default:
+                return column + 1 < mSize ? cell + 1 : -1;
+        }
+    }
+}
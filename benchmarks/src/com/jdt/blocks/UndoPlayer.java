@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+/**
+ * Moves pieces back when a move is undone, and forward again when it is
+ * redone, as BoardLayout does in the game, where Game.undoMove and
+ * Game.redoMove only tell the observers
+ *
+ * @author Tom
+ */
+final class UndoPlayer implements GameObserver {
+
+    private final Game mGame;
+
+    UndoPlayer(Game game) {
+        mGame = game;
+    }
+
+    public void onUndoMove(Piece piece) {
+        piece.mMobility.reverse();
+        mGame.removePiece(piece);
+        piece.move();
+        mGame.addPiece(piece);
+    }
+
+    public void onRedoMove(Piece piece) {
+        mGame.removePiece(piece);
+        piece.move();
+        mGame.addPiece(piece);
+    }
+
+    public void onMovePiece() {
+    }
+
+    public void onGameStart() {
+    }
+
+    public void onGameFinish() {
+    }
+
+    public void onGameLost() {
+    }
+}
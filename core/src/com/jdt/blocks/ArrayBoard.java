@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package com.jdt.blocks;
+
+import com.jdt.blocks.Game.Direction;
+
+/**
+ * Board storage using a matrix of integers, one per cell
+ * 
+ * @author Tom
+ */
+class ArrayBoard implements Board {
+
+    private final int mRows;
+    private final int mColumns;
+    /* the game board matrix, each cell contains an integer that defines a piece */
+    private final int[][] mState;
+
+    /**
+     * Creates the board from an initial board matrix, the matrix is copied
+     * 
+     * @param state the initial board matrix
+     * @param rows number of rows
+     * @param columns number of columns
+     */
+    ArrayBoard(int[][] state, int rows, int columns) {
+
+        mRows = rows;
+        mColumns = columns;
+        mState = new int[rows][];
+        for (int row = 0; row < rows; ++row)
+            mState[row] = state[row].clone();
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public int getColumns() {
+        return mColumns;
+    }
+
+    public int getCellState(int row, int column) {
+        return mState[row][column];
+    }
+
+    public void setCellState(int row, int column, int value) {
+        mState[row][column] = value;
+    }
+
+    public boolean isOccupied(int row, int column) {
+        return mState[row][column] != Game.CELL_EMPTY;
+    }
+
+    public boolean hasState(int row, int column, int state) {
+        return mState[row][column] == state;
+    }
+
+    public void copyFrom(Board board) {
+        ArrayBoard other = (ArrayBoard) board;
+        for (int row = 0; row < mRows; ++row)
+            System.arraycopy(other.mState[row], 0, mState[row], 0, mColumns);
+    }
+
+    public int getCellMobility(int row, int column, Direction direction) {
+        int mobility = 0;
+
+        switch (direction) {
+            case UP:
+                for (int r = row - 1; r >= 0; --r) {
+                    if (mState[r][column] != Game.CELL_EMPTY)
+                        break;
+                    ++mobility;
+                }
+                return mobility;
+            case DOWN:
+                for (int r = row + 1; r < mRows; ++r) {
+                    if (mState[r][column] != Game.CELL_EMPTY)
+                        break;
+                    ++mobility;
+                }
+                return mobility;
+            case LEFT:
+                for (int col = column - 1; col >= 0; --col) {
+                    if (mState[row][col] != Game.CELL_EMPTY)
+                        break;
+                    ++mobility;
+                }
+                return mobility;
+            case RIGHT:
+                for (int col = column + 1; col < mColumns; ++col) {
+                    if (mState[row][col] != Game.CELL_EMPTY)
+                        break;
+                    ++mobility;
+                }
+                return mobility;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks;
+
+import com.jdt.blocks.Game.Direction;
+
+/**
+ * Board storage using packed bitsets. There is one bitset per piece type,
+ * cells are numbered row by row, and the occupied cells are kept in an
+ * Occupancy, whose row and column ordered bitsets make scans along a row or
+ * column word-wide bit operations. A plain
+ * array of cell states is kept alongside the bitsets so that reading a cell
+ * does not have to search every type.
+ *
+ * @author Tom
+ */
+class BitBoard implements Board {
+
+    private final int mRows;
+    private final int mColumns;
+    /* the occupied cells, for the free-run scans */
+    private final Occupancy mOccupancy;
+    /* cells of each piece type, indexed by the cell state, row major */
+    private final long[][] mTypes;
+    /* state of each cell, indexed row * columns + column */
+    private final int[] mCells;
+
+    /**
+     * Creates the board from an initial board matrix. The type table is sized
+     * from the piece types in the matrix, which are all the types the level
+     * will ever hold.
+     *
+     * @param state the initial board matrix
+     * @param rows number of rows
+     * @param columns number of columns
+     */
+    BitBoard(int[][] state, int rows, int columns) {
+
+        mRows = rows;
+        mColumns = columns;
+
+        mOccupancy = new Occupancy(rows, columns);
+        mCells = new int[rows * columns];
+
+        int maxType = Game.CELL_STATE_MIN;
+        for (int row = 0; row < rows; ++row)
+            for (int col = 0; col < columns; ++col)
+                maxType = Math.max(maxType, state[row][col]);
+
+        mTypes = new long[maxType + 1][];
+        for (int row = 0; row < rows; ++row)
+            for (int col = 0; col < columns; ++col) {
+                int type = state[row][col];
+                if (type >= Game.CELL_STATE_MIN && mTypes[type] == null)
+                    mTypes[type] = new long[Bits.words(rows * columns)];
+            }
+
+        for (int row = 0; row < rows; ++row)
+            for (int col = 0; col < columns; ++col)
+                setCellState(row, col, state[row][col]);
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public int getColumns() {
+        return mColumns;
+    }
+
+    public int getCellState(int row, int column) {
+        return mCells[row * mColumns + column];
+    }
+
+    public void setCellState(int row, int column, int value) {
+        int index = row * mColumns + column;
+
+        if (value >= Game.CELL_STATE_MIN && (value >= mTypes.length || mTypes[value] == null))
+            throw new IllegalArgumentException("piece type " + value + " is not on this board");
+
+        /* clear whatever type occupied the cell before */
+        int previous = mCells[index];
+        if (previous >= Game.CELL_STATE_MIN)
+            Bits.clear(mTypes[previous], index);
+
+        if (value < Game.CELL_STATE_MIN) {
+            mCells[index] = Game.CELL_EMPTY;
+            mOccupancy.setOccupied(row, column, false);
+            return;
+        }
+
+        mCells[index] = value;
+        Bits.set(mTypes[value], index);
+        mOccupancy.setOccupied(row, column, true);
+    }
+
+    public boolean isOccupied(int row, int column) {
+        return mOccupancy.isOccupied(row, column);
+    }
+
+    public boolean hasState(int row, int column, int state) {
+        if (state < Game.CELL_STATE_MIN || state >= mTypes.length || mTypes[state] == null)
+            return false;
+        return Bits.isSet(mTypes[state], row * mColumns + column);
+    }
+
+    public int getCellMobility(int row, int column, Direction direction) {
+        return mOccupancy.getFreeRun(row, column, direction);
+    }
+
+    public void copyFrom(Board board) {
+        BitBoard other = (BitBoard) board;
+
+        mOccupancy.copyFrom(other.mOccupancy);
+        System.arraycopy(other.mCells, 0, mCells, 0, mCells.length);
+
+        /* both boards come from the same level, so the tables match */
+        for (int type = Game.CELL_STATE_MIN; type < mTypes.length; ++type)
+            if (mTypes[type] != null)
+                System.arraycopy(other.mTypes[type], 0, mTypes[type], 0, mTypes[type].length);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+/**
+ * Operations on bitsets packed into arrays of longs, 64 cells per word, bit
+ * i of the set being bit (i & 63) of word i >>> 6
+ *
+ * @author Tom
+ */
+final class Bits {
+
+    private static final int WORD_SHIFT = 6;
+    private static final int WORD_MASK = 63;
+
+    private Bits() {
+    }
+
+    /** Returns the number of words holding a bitset of the given size */
+    static int words(int size) {
+        return (size + WORD_MASK) >>> WORD_SHIFT;
+    }
+
+    static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> WORD_SHIFT] & (1L << index)) != 0;
+    }
+
+    static void set(long[] bits, int index) {
+        bits[index >>> WORD_SHIFT] |= (1L << index);
+    }
+
+    static void clear(long[] bits, int index) {
+        bits[index >>> WORD_SHIFT] &= ~(1L << index);
+    }
+
+    /**
+     * Returns the index of the first set bit in [from, end), or end if there
+     * is none
+     */
+    static int nextSetBit(long[] bits, int from, int end) {
+        if (from >= end)
+            return end;
+
+        int word = from >>> WORD_SHIFT;
+        long value = bits[word] & (-1L << from);
+
+        while (true) {
+            if (value != 0) {
+                int index = (word << WORD_SHIFT) + Long.numberOfTrailingZeros(value);
+                return Math.min(index, end);
+            }
+            if (++word << WORD_SHIFT >= end)
+                return end;
+            value = bits[word];
+        }
+    }
+
+    /**
+     * Returns the index of the last set bit in [start, from], or start - 1 if
+     * there is none
+     */
+    static int previousSetBit(long[] bits, int from, int start) {
+        if (from < start)
+            return start - 1;
+
+        int word = from >>> WORD_SHIFT;
+        long value = bits[word] & (-1L >>> (WORD_MASK - (from & WORD_MASK)));
+
+        while (true) {
+            if (value != 0) {
+                int index = (word << WORD_SHIFT) + WORD_MASK - Long.numberOfLeadingZeros(value);
+                return Math.max(index, start - 1);
+            }
+            if (--word < 0 || ((word << WORD_SHIFT) + WORD_MASK) < start)
+                return start - 1;
+            value = bits[word];
+        }
+    }
+}
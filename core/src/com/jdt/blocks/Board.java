@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package com.jdt.blocks;
+
+import com.jdt.blocks.Game.Direction;
+
+/**
+ * Storage for the game board matrix. The Game object keeps all board state in
+ * an implementation of this interface, so that different storage engines can
+ * be swapped in and compared. Row and column arguments are always within the
+ * board, bounds checks are done by the Game.
+ * 
+ * @author Tom
+ */
+interface Board {
+
+    /** Returns the number of rows on the board */
+    int getRows();
+
+    /** Returns the number of columns on the board */
+    int getColumns();
+
+    /**
+     * Returns the state of the cell, the piece type or empty
+     * 
+     * @param row the cell row
+     * @param column the cell column
+     * @return the cell state
+     */
+    int getCellState(int row, int column);
+
+    /**
+     * Sets the state of the cell
+     * 
+     * @param row the cell row
+     * @param column the cell column
+     * @param value the piece type, or empty
+     */
+    void setCellState(int row, int column, int value);
+
+    /**
+     * Tests for a piece at the cell
+     * 
+     * @param row the cell row
+     * @param column the cell column
+     * @return true if the cell holds a piece of any type
+     */
+    boolean isOccupied(int row, int column);
+
+    /**
+     * Tests for a piece of one type at the cell
+     * 
+     * @param row the cell row
+     * @param column the cell column
+     * @param state the piece type
+     * @return true if the cell holds a piece of the type
+     */
+    boolean hasState(int row, int column, int state);
+
+    /**
+     * Determines the number of empty board spaces from the provided cell, in
+     * the provided direction
+     * 
+     * @param row the starting row
+     * @param column the starting column
+     * @param direction the direction to travel, counting empty spaces
+     * @return the number of empty spaces before another piece or the board edge
+     */
+    int getCellMobility(int row, int column, Direction direction);
+
+    /**
+     * Sets every cell to the state of the same cell of another board, with
+     * bulk array copies
+     * 
+     * @param board a board of the same engine and size
+     */
+    void copyFrom(Board board);
+}
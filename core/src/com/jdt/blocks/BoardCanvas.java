@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+/**
+ * Where BoardRenderer draws: the Android canvas of the board view in the
+ * game, or a recording canvas off the device
+ * 
+ * @author Tom
+ */
+public interface BoardCanvas {
+
+    /** Fills a rectangle with a color, at an alpha from 0 to 255 */
+    void fillRect(float left, float top, float right, float bottom, int color, int alpha);
+
+    /** Draws a line with a color, at an alpha from 0 to 255 */
+    void drawLine(float startX, float startY, float stopX, float stopY, int color, int alpha);
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+/**
+ * Draws the pieces of the game board. Each cell of a piece is a filled
+ * rectangle one pixel in from the cell edges, and the gap between two cells
+ * of the same piece is closed by a grout line. Drawing allocates nothing, so
+ * that animation frames do not churn the heap.
+ * 
+ * @author Tom
+ */
+public class BoardRenderer {
+
+    /** The alpha of pieces at rest on the board */
+    public static final int PIECE_ALPHA = 150;
+
+    /* the cell being drawn, reused */
+    private final Cell mCell = new Cell();
+
+    /**
+     * Draws every piece on the board
+     * 
+     * @param game the game
+     * @param cellWidth width of a cell
+     * @param cellHeight height of a cell
+     * @param canvas drawn here
+     */
+    public void drawBoard(Game game, float cellWidth, float cellHeight, BoardCanvas canvas) {
+
+        int rows = game.getRows();
+        int columns = game.getColumns();
+        Cell cell = mCell;
+
+        /* for each game board row... */
+        for (cell.mRow = 0; cell.mRow < rows; ++cell.mRow) {
+
+            /* for each game board column */
+            for (cell.mColumn = 0; cell.mColumn < columns; ++cell.mColumn) {
+
+                if (!game.isCellPiece(cell))
+                    continue;
+
+                int color = game.getCellColor(cell);
+                int cellState = game.getCellState(cell);
+
+                float top = cell.mRow * cellHeight + 1;
+                float bottom = top + cellHeight - 2;
+                float left = cell.mColumn * cellWidth + 1;
+                float right = left + cellWidth - 2;
+
+                canvas.fillRect(left, top, right, bottom, color, PIECE_ALPHA);
+
+                /* grout, right */
+                if (cell.mColumn < columns - 1) {
+
+                    cell.mColumn++;
+                    if (game.getCellState(cell) == cellState)
+                        canvas.drawLine(right + 1, top, right + 1, bottom, color, PIECE_ALPHA);
+                    cell.mColumn--;
+                }
+                /* grout, bottom */
+                if (cell.mRow < rows - 1) {
+
+                    cell.mRow++;
+                    if (game.getCellState(cell) == cellState)
+                        canvas.drawLine(left, bottom + 1, right, bottom + 1, color, PIECE_ALPHA);
+                    cell.mRow--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws one piece, for example one being animated
+     * 
+     * @param game the game, for the piece color
+     * @param piece the piece to draw
+     * @param cellWidth width of a cell
+     * @param cellHeight height of a cell
+     * @param alpha the alpha with which to draw
+     * @param canvas drawn here
+     */
+    public void drawPiece(Game game, Piece piece, float cellWidth, float cellHeight, int alpha,
+            BoardCanvas canvas) {
+
+        /* get the color of the piece */
+        int color = game.getValueColor(piece.mState);
+
+        /* draw each cell */
+        for (int i = 0; i < piece.getCellCount(); ++i) {
+
+            int row = piece.getCellRow(i);
+            int column = piece.getCellColumn(i);
+
+            float top = row * cellHeight + 1;
+            float bottom = top + cellHeight - 2;
+            float left = column * cellWidth + 1;
+            float right = left + cellWidth - 2;
+
+            canvas.fillRect(left, top, right, bottom, color, alpha);
+
+            /* grout, right */
+            if (piece.containsCell(row, column + 1))
+                canvas.drawLine(right + 1, top, right + 1, bottom, color, alpha);
+
+            /* grout, bottom */
+            if (piece.containsCell(row + 1, column))
+                canvas.drawLine(left, bottom + 1, right, bottom + 1, color, alpha);
+        }
+    }
+}
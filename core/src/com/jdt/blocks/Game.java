@@ -0,0 +1,954 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package com.jdt.blocks;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+
+/**
+ * Maintains current game state, processes game moves
+ * 
+ * @author Tom
+ */
+public class Game {
+
+    public static final int CELL_OUT_OF_BOUNDS = -1;
+    public static final int CELL_EMPTY = 0;
+    public static final int CELL_STATE_MIN = 1;
+
+    public enum Direction {
+        UP, DOWN, LEFT, RIGHT
+    }
+
+    /** Storage engines available for the game board */
+    public enum Engine {
+        /* a matrix of integers, one per cell, scanned one cell at a time */
+        ARRAY,
+        /* packed bitsets, one per piece type plus occupancy; the default */
+        BITBOARD
+    }
+
+    /*********************************************************************************************
+     * Private Game data
+     */
+
+    /* the game id, used to save scores to the database */
+    private String mID;
+    /* the game name, for the UI */
+    private String mName;
+    /* number of rows and columns in the game board */
+    private int mRows;
+    private int mColumns;
+    /* the game board, each cell contains an integer that defines a piece */
+    private Board mBoard;
+    /* the starting board and its hash, never changed, restored by restartGame */
+    private Board mInitialBoard;
+    private long mInitialHash;
+    /* the storage engine used for the game board */
+    private Engine mEngine;
+    /*
+     * lookup from board matrix integer to the color used to render the board
+     * cell
+     */
+    private HashMap<Integer, Integer> mColors;
+    /* the moves played, for move-undo and redo */
+    private MoveJournal mJournal;
+    /* message to display when game level successfully completed */
+    private String mFinishMessage;
+    /*
+     * defines the combination of board cells that constitute the successful
+     * finish state
+     */
+    private Piece mFinishPiece;
+    private boolean mFinished;
+    /* true when the game can no longer be finished */
+    private boolean mLost;
+    private LinkedList<GameObserver> mObservers;
+    /* the piece each board cell belongs to */
+    private PieceLabels mLabels;
+    /* Zobrist hash of the board, updated as cells change */
+    private long mStateHash;
+    /*
+     * pieces that can currently move, by piece label, with their mobility. A
+     * piece is re-evaluated only when a cell near it has changed, its cells
+     * are queued in the dirty list until the movable pieces are requested.
+     */
+    private int[] mMovableLabels;
+    private int[] mMovablePosition;
+    private int mMovableCount;
+    private Mobility[] mLabelMobility;
+    private int[] mDirtyCells;
+    private boolean[] mCellDirty;
+    private int mDirtyCount;
+    private int[] mEvaluated;
+    private int mEvaluateGeneration;
+
+    /*********************************************************************************************
+     * Game creation and access
+     */
+
+    /* the current game instance */
+    //private static Game sInstance = null;
+
+    /** Returns the current game instance */
+    //public static Game getInstance() {
+     //   return sInstance;
+   // }
+
+    /**
+     * Create a new game instance from a game definition stream, using the
+     * default board engine
+     * 
+     * @param in the game definition XML, in the format of res/xml/game1.xml;
+     *            not closed
+     * @return a new Game instance based on the board definition
+     */
+    public static Game createFromStream(InputStream in) {
+        return createFromStream(in, Engine.BITBOARD);
+    }
+
+    /**
+     * Create a new game instance from a game definition stream
+     * 
+     * @param in the game definition XML, in the format of res/xml/game1.xml;
+     *            not closed
+     * @param engine the storage engine for the game board
+     * @return a new Game instance based on the board definition
+     */
+    public static Game createFromStream(InputStream in, Engine engine) {
+        return createFromParser(new GameParser(in), engine);
+    }
+
+    /**
+     * Create a new game instance from a game definition held in memory, using
+     * the default board engine
+     * 
+     * @param xml the game definition XML, UTF-8 encoded
+     * @return a new Game instance based on the board definition
+     */
+    public static Game createFromBytes(byte[] xml) {
+        return createFromBytes(xml, Engine.BITBOARD);
+    }
+
+    /**
+     * Create a new game instance from a game definition held in memory
+     * 
+     * @param xml the game definition XML, UTF-8 encoded
+     * @param engine the storage engine for the game board
+     * @return a new Game instance based on the board definition
+     */
+    public static Game createFromBytes(byte[] xml, Engine engine) {
+        return createFromStream(new ByteArrayInputStream(xml), engine);
+    }
+
+    /**
+     * Create a new game instance from a parsed game definition
+     * 
+     * @param parser the parsed game definition
+     * @param engine the storage engine for the game board
+     * @return a new Game instance based on the board definition
+     */
+    public static Game createFromParser(GameParser parser, Engine engine) {
+
+        if (parser == null || !parser.valid())
+            throw new IllegalArgumentException("illegal game definition");
+
+        return create(parser.getID(), parser.getName(), parser.getState(),
+                parser.getColors(), parser.getFinishMessage(), parser.getFinishPiece(), engine);
+    }
+
+    /**
+     * Create a new game instance from a board matrix, using the default board
+     * engine. The game has no colors and no finish message, and its name is
+     * its id.
+     * 
+     * @param id the game id
+     * @param state the starting board, by row then column; each cell holds
+     *            CELL_EMPTY or a piece type. Copied.
+     * @param finishPiece the piece to form to finish the game
+     * @return a new Game instance based on the board
+     */
+    public static Game createFromState(String id, int[][] state, Piece finishPiece) {
+        return createFromState(id, state, finishPiece, Engine.BITBOARD);
+    }
+
+    /**
+     * Create a new game instance from a board matrix. The game has no colors
+     * and no finish message, and its name is its id.
+     * 
+     * @param id the game id
+     * @param state the starting board, by row then column; each cell holds
+     *            CELL_EMPTY or a piece type. Copied.
+     * @param finishPiece the piece to form to finish the game
+     * @param engine the storage engine for the game board
+     * @return a new Game instance based on the board
+     */
+    public static Game createFromState(String id, int[][] state, Piece finishPiece,
+            Engine engine) {
+
+        if (state.length == 0 || state[0].length == 0)
+            throw new IllegalArgumentException("illegal board size");
+        for (int[] row : state) {
+            if (row.length != state[0].length)
+                throw new IllegalArgumentException("illegal board size");
+        }
+        if (finishPiece.getCellCount() == 0)
+            throw new IllegalArgumentException("no finish piece");
+
+        return create(id, id, state, new HashMap<Integer, Integer>(), null, finishPiece, engine);
+    }
+
+    /* Creates a game, copying the definition */
+    private static Game create(String id, String name, int[][] state,
+            HashMap<Integer, Integer> colors,
+            String finishMessage, Piece finishPiece, Engine engine) {
+
+        Game game = new Game();
+
+        game.mEngine = engine;
+        game.mID = new String(id);
+        game.mName = new String(name);
+        game.mFinished = false;
+        game.mObservers = new LinkedList<GameObserver>();
+
+        if (finishMessage != null)
+            game.mFinishMessage = new String(finishMessage);
+
+        game.mRows = state.length;
+        game.mColumns = state[0].length;
+        game.mJournal = new MoveJournal(game.mColumns);
+        game.initializeBoard(createBoard(engine, state, game.mRows, game.mColumns));
+        game.mInitialBoard = createBoard(engine, state, game.mRows, game.mColumns);
+        game.mInitialHash = game.mStateHash;
+        game.mColors = new HashMap<Integer, Integer>(colors);
+
+        try {
+            game.mFinishPiece = (Piece) finishPiece.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException();
+        }
+
+        return game;
+    }
+
+    /* Default constructor is private, games only created with a factory method */
+    private Game() {
+    }
+
+    /* Sets the game board, and builds the state derived from it */
+    private void initializeBoard(Board board) {
+        mBoard = board;
+        mLabels = new PieceLabels(board);
+
+        mStateHash = 0;
+        for (int row = 0; row < mRows; ++row)
+            for (int col = 0; col < mColumns; ++col)
+                mStateHash ^= Zobrist.key(row, col, board.getCellState(row, col));
+
+        int cells = mRows * mColumns;
+        mMovableLabels = new int[cells];
+        mMovablePosition = new int[cells];
+        mMovableCount = 0;
+        mLabelMobility = new Mobility[cells];
+        mDirtyCells = new int[cells];
+        mCellDirty = new boolean[cells];
+        mDirtyCount = 0;
+        mEvaluated = new int[cells];
+        mEvaluateGeneration = 0;
+
+        resetMovablePieces();
+    }
+
+    /* Forgets the movable pieces, every piece needs to be evaluated once */
+    private void resetMovablePieces() {
+        for (int i = 0; i < mMovableCount; ++i)
+            mMovablePosition[mMovableLabels[i]] = 0;
+        mMovableCount = 0;
+
+        for (int index = 0; index < mRows * mColumns; ++index)
+            markDirty(index);
+    }
+
+    /* Creates the board storage for the requested engine */
+    private static Board createBoard(Engine engine, int[][] state, int rows, int columns) {
+        switch (engine) {
+            case BITBOARD:
+                return new BitBoard(state, rows, columns);
+            case ARRAY:
+            default:
+                return new ArrayBoard(state, rows, columns);
+        }
+    }
+
+    /*********************************************************************************************
+     * Game Observers
+     */
+
+    /**
+     * Adds an object that will receive events from this game object
+     * 
+     * @param observer the observer to add
+     */
+    public void addObserver(GameObserver observer) {
+
+        mObservers.add(observer);
+
+        observer.onGameStart();
+    }
+
+    /**
+     * Clears all objects from receiving events from this game objecgt
+     */
+    public void clearObservers() {
+        mObservers.clear();
+    }
+
+    /*********************************************************************************************
+     * Public Interface
+     */
+
+    /**
+     * Returns the number of moves that have occurred in the current game
+     * 
+     * @return number of moves that may be un-done
+     */
+    public int getMoveCount() {
+        return getUndoSize();
+    }
+
+    /**
+     * Returns the name of the game, for display in the UI
+     * 
+     * @return game name
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Returns the game id, used to store game scores in the database
+     * 
+     * @return game id
+     */
+    public String getID() {
+        return mID;
+    }
+
+    /**
+     * Returns the storage engine used for the game board
+     * 
+     * @return the board engine
+     */
+    public Engine getEngine() {
+        return mEngine;
+    }
+
+    /**
+     * returns the number of rows on the game board
+     * 
+     * @return rows
+     */
+    public int getRows() {
+        return mRows;
+    }
+
+    /**
+     * returns the number of columns on the game board
+     * 
+     * @return columns
+     */
+    public int getColumns() {
+        return mColumns;
+    }
+
+    /**
+     * Returns the state of the cell, a value that defines the type or color of
+     * the game piece at the cell location, or empty if there is no piece at the
+     * location
+     * 
+     * @param cell the cell for which the state is obtained
+     * @return the cell state, the piece color
+     */
+    public int getCellState(Cell cell) {
+        if (cell.mRow < 0 || cell.mRow >= mRows)
+            return CELL_OUT_OF_BOUNDS;
+        if (cell.mColumn < 0 || cell.mColumn >= mColumns)
+            return CELL_OUT_OF_BOUNDS;
+
+        return mBoard.getCellState(cell.mRow, cell.mColumn);
+    }
+
+    /**
+     * Copies the state of every cell into an array, row by row
+     * 
+     * @param states receives the cell states, at index row * columns + column
+     */
+    public void getCellStates(int[] states) {
+        for (int row = 0; row < mRows; ++row)
+            for (int col = 0; col < mColumns; ++col)
+                states[row * mColumns + col] = mBoard.getCellState(row, col);
+    }
+
+    /**
+     * Determines if the provided cell is part of a piece
+     * 
+     * @param cell the cell location to test
+     * @return true if the cell is part of a game piece
+     */
+    public boolean isCellPiece(Cell cell) {
+        if (cell.mRow < 0 || cell.mRow >= mRows)
+            return false;
+        if (cell.mColumn < 0 || cell.mColumn >= mColumns)
+            return false;
+
+        return mBoard.isOccupied(cell.mRow, cell.mColumn);
+    }
+
+    /**
+     * Returns the color that the game board cell should be colored Different
+     * game pieces have different colors, but not all pieces have unique colors.
+     * Pieces with the same color may join together to form a larger piece, as
+     * part of game play. Each board cell has a value that is used to look up
+     * the actual color.
+     * 
+     * @param cell the board cell for which to look up the color
+     * @return the color
+     */
+    public int getCellColor(Cell cell) {
+        if (cell.mRow < 0 || cell.mRow >= mRows)
+            return 0;
+        if (cell.mColumn < 0 || cell.mColumn >= mColumns)
+            return 0;
+
+        int value = mBoard.getCellState(cell.mRow, cell.mColumn);
+
+        return getValueColor(value);
+    }
+
+    /**
+     * Returns the color associated with the game piece value Game pieces are
+     * assigned a single value. Each cell of a piece has that value in the game
+     * board matrix. Contiguous cells with the same value constitute a piece.
+     * After a piece has moved, it will merge with newly contiguous cells of the
+     * same value to form a new, larger piece. The values of cells in the board
+     * matrix are not colors themselves, but instead are used to lookup colors.
+     * This is because there is a special value used to indicate empty cell
+     * locations.
+     * 
+     * @param value the piece value for which to look up the color
+     * @return the color
+     */
+    public int getValueColor(int value) {
+        if (!mColors.containsKey(value))
+            return 0;
+        int color = mColors.get(value);
+        return color;
+    }
+
+    /**
+     * Returns a 64 bit hash of the current board, the Zobrist hash of every
+     * occupied cell and its piece type. Equal boards always have equal hashes,
+     * and the hash is kept up to date as pieces move, so this is cheap to call.
+     * 
+     * @return the board hash
+     */
+    public long getStateHash() {
+        return mStateHash;
+    }
+
+    /**
+     * Tests for the game being in a finished state
+     * 
+     * @return true if the game is finished
+     */
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * Tests for the game being in a lost state, one from which the finish
+     * piece can never be formed. Set by setLost, the game does not analyze
+     * its own boards.
+     * 
+     * @return true if the game is lost
+     */
+    public boolean isLost() {
+        return mLost;
+    }
+
+    /**
+     * Sets the game state to lost, notifying the observers. The next move,
+     * undo or restart clears it.
+     */
+    public void setLost() {
+        if (mFinished || mLost)
+            return;
+
+        mLost = true;
+
+        for (GameObserver observer : mObservers) {
+            observer.onGameLost();
+        }
+    }
+
+    /**
+     * Tests for any moves that can be un-done
+     * 
+     * @return true if there are moves that can be un-done
+     */
+    public boolean canUndoMove() {
+        return mJournal.size() != 0;
+    }
+
+    /**
+     * Tests for un-done moves that can be played again
+     * 
+     * @return true if there are moves that can be re-done
+     */
+    public boolean canRedoMove() {
+        return mJournal.canRedo();
+    }
+
+    /**
+     * Returns the game to its start-up state. The starting board is copied
+     * back and the state derived from it rebuilt, so the time taken depends on
+     * the board size and not on the number of moves played. The moves played
+     * stay in the move journal, and can be re-done.
+     */
+    public void restartGame() {
+        if (!canUndoMove())
+            return;
+
+        mBoard.copyFrom(mInitialBoard);
+        mStateHash = mInitialHash;
+        mLabels.reset();
+        resetMovablePieces();
+        mJournal.rewind();
+
+        mFinished = false;
+        mLost = false;
+
+        /* notify all observers that the game is starting */
+        for (GameObserver observer : mObservers) {
+            observer.onGameStart();
+        }
+    }
+
+    /**
+     * Un-dones one game move, if the game isn't finished, and there are
+     * available moves
+     */
+    public void undoMove() {
+        if (isFinished())
+            return;
+
+        if (!canUndoMove())
+            return;
+
+        Piece piece = mJournal.undo();
+        mLost = false;
+
+        for (GameObserver observer : mObservers) {
+            observer.onUndoMove(piece);
+        }
+    }
+
+    /**
+     * Re-does the last un-done move, if the game isn't finished. The observers
+     * move the piece, as they do for a tap, but the move is already recorded
+     * so it must not be added again with addUndoMove.
+     */
+    public void redoMove() {
+        if (isFinished())
+            return;
+
+        if (!canRedoMove())
+            return;
+
+        Piece piece = mJournal.redo();
+
+        for (GameObserver observer : mObservers) {
+            observer.onRedoMove(piece);
+        }
+    }
+
+    /**
+     * Removes a piece from the board. When a piece is moved it is first
+     * removed, then the movement is animated, then the piece is added to its
+     * new location.
+     * 
+     * @param piece the piece to remove
+     */
+    public void removePiece(Piece piece) {
+        if (piece == null)
+            return;
+
+        /* remove each cell of the piece */
+        for (int i = 0; i < piece.getCellCount(); ++i)
+            setCellState(piece.getCellRow(i), piece.getCellColumn(i), CELL_EMPTY);
+
+        mLabels.remove(piece);
+        markNeighborhoodDirty(piece);
+    }
+
+    /**
+     * Adds a piece to the game board. When a piece is moved it is first
+     * removed, then the movement is animated, then the piece is added to its
+     * new location.
+     * 
+     * @param piece the piece to add.
+     */
+    public void addPiece(Piece piece) {
+        if (piece == null)
+            return;
+
+        /* add each cell of the piece */
+        for (int i = 0; i < piece.getCellCount(); ++i)
+            setCellState(piece.getCellRow(i), piece.getCellColumn(i), piece.mState);
+
+        /* label the new cells, merging with neighboring pieces of the same type */
+        mLabels.add(piece);
+        markNeighborhoodDirty(piece);
+    }
+
+    /**
+     * Records the move in the move journal, dropping any un-done moves, and
+     * fires an event that a move has occurred. Only the cells, type and
+     * movement of the piece are kept, so the piece may be reused.
+     * 
+     * @param piece the piece that was moved, at its new location
+     */
+    public void addUndoMove(Piece piece) {
+        mJournal.add(piece);
+
+        for (GameObserver observer : mObservers) {
+            observer.onMovePiece();
+        }
+    }
+
+    /**
+     * Constructs a piece object for the piece overlapping the provided cell,
+     * the contiguous cells that have the same state, the value that
+     * identifies the type or color of game piece at each cell location. The
+     * cells come from the piece labels kept up to date as pieces are added and
+     * removed, so no flood fill of the board is needed.
+     * 
+     * @param cell the board location from which to construct the game piece
+     * @return the game piece overlapping the cell location
+     */
+    public Piece getPiece(Cell cell) {
+        Piece piece = new Piece();
+
+        piece.mState = getCellState(cell);
+
+        if (piece.mState < CELL_STATE_MIN)
+            return piece;
+
+        return getLabelPiece(mLabels.getLabel(cell.mRow * mColumns + cell.mColumn), piece);
+    }
+
+    /**
+     * Returns the pieces that can currently move. Only pieces near cells that
+     * changed since the last call are re-evaluated, the rest are remembered.
+     * 
+     * @return the movable pieces, with their mobility
+     */
+    public List<Piece> getMovablePieces() {
+        updateMovablePieces();
+
+        List<Piece> pieces = new ArrayList<Piece>(mMovableCount);
+        for (int i = 0; i < mMovableCount; ++i) {
+            int label = mMovableLabels[i];
+            Piece piece = new Piece();
+            piece.mState = mBoard.getCellState(label / mColumns, label % mColumns);
+            pieces.add(getLabelPiece(label, piece));
+        }
+        return pieces;
+    }
+
+    /**
+     * Fills in the cells and mobility of a piece from its label
+     * 
+     * @param label the piece label
+     * @param piece the piece, with its state already set
+     * @return the piece
+     */
+    private Piece getLabelPiece(int label, Piece piece) {
+        int count = mLabels.getCellCount(label);
+
+        for (int i = 0; i < count; ++i) {
+            int index = mLabels.getCell(label, i);
+            piece.addCell(index / mColumns, index % mColumns);
+        }
+
+        getLabelMobility(label, piece.mState, piece.mMobility);
+        return piece;
+    }
+
+    /**
+     * Determines the mobility of a piece, from the distance to the nearest
+     * barrier (board end or another piece) of every cell on its boundary
+     * 
+     * @param label the piece label
+     * @param state the piece type
+     * @param mobility receives the mobility, must be reset
+     */
+    private void getLabelMobility(int label, int state, Mobility mobility) {
+        int count = mLabels.getCellCount(label);
+
+        for (int i = 0; i < count; ++i) {
+            int index = mLabels.getCell(label, i);
+            int row = index / mColumns;
+            int column = index - (row * mColumns);
+
+            /*
+             * where a neighboring cell is not part of the piece, determine
+             * distance to nearest barrier (board end or another piece)
+             */
+            addBoundaryMobility(mobility, state, row, column, Direction.UP);
+            addBoundaryMobility(mobility, state, row, column, Direction.DOWN);
+            addBoundaryMobility(mobility, state, row, column, Direction.LEFT);
+            addBoundaryMobility(mobility, state, row, column, Direction.RIGHT);
+        }
+    }
+
+    /**
+     * If the neighboring cell in the provided direction is not part of the
+     * piece, the cell is on the piece boundary, and its distance to the
+     * nearest barrier (board end or another piece) limits the piece mobility
+     */
+    private void addBoundaryMobility(Mobility mobility, int state, int row, int column,
+            Direction direction) {
+        if (!isNeighborState(row, column, direction, state))
+            mobility.setMobility(getCellMobility(row, column, direction), direction);
+    }
+
+    /**
+     * Queues for re-evaluation every piece whose mobility may have changed
+     * when the cells of a piece were added or removed: any piece still holding
+     * one of those cells, and the nearest piece in each direction from each
+     * cell, whose free run ended at or passed through the cell.
+     */
+    private void markNeighborhoodDirty(Piece piece) {
+        for (int i = 0; i < piece.getCellCount(); ++i) {
+            int row = piece.getCellRow(i);
+            int column = piece.getCellColumn(i);
+
+            markDirty(row * mColumns + column);
+
+            int up = row - getCellMobility(row, column, Direction.UP) - 1;
+            if (up >= 0)
+                markDirty(up * mColumns + column);
+            int down = row + getCellMobility(row, column, Direction.DOWN) + 1;
+            if (down < mRows)
+                markDirty(down * mColumns + column);
+            int left = column - getCellMobility(row, column, Direction.LEFT) - 1;
+            if (left >= 0)
+                markDirty(row * mColumns + left);
+            int right = column + getCellMobility(row, column, Direction.RIGHT) + 1;
+            if (right < mColumns)
+                markDirty(row * mColumns + right);
+        }
+    }
+
+    private void markDirty(int index) {
+        if (!mCellDirty[index]) {
+            mCellDirty[index] = true;
+            mDirtyCells[mDirtyCount++] = index;
+        }
+    }
+
+    /**
+     * Re-evaluates the pieces holding dirty cells, and drops movable entries
+     * whose label is no longer a piece
+     */
+    private void updateMovablePieces() {
+        if (mDirtyCount == 0)
+            return;
+
+        if (++mEvaluateGeneration == 0) {
+            Arrays.fill(mEvaluated, 0);
+            mEvaluateGeneration = 1;
+        }
+
+        /* labels change when pieces merge or split */
+        for (int i = mMovableCount - 1; i >= 0; --i) {
+            int label = mMovableLabels[i];
+            if (mLabels.getLabel(label) != label)
+                setLabelMovable(label, false);
+        }
+
+        for (int i = 0; i < mDirtyCount; ++i) {
+            int index = mDirtyCells[i];
+            mCellDirty[index] = false;
+
+            int label = mLabels.getLabel(index);
+            if (label == PieceLabels.NO_PIECE || mEvaluated[label] == mEvaluateGeneration)
+                continue;
+            mEvaluated[label] = mEvaluateGeneration;
+
+            Mobility mobility = mLabelMobility[label];
+            if (mobility == null) {
+                mobility = new Mobility();
+                mLabelMobility[label] = mobility;
+            }
+            mobility.reset();
+            getLabelMobility(label, mBoard.getCellState(index / mColumns, index % mColumns), mobility);
+
+            setLabelMovable(label, mobility.canMove());
+        }
+        mDirtyCount = 0;
+    }
+
+    /* Adds or removes a piece label from the movable set */
+    private void setLabelMovable(int label, boolean movable) {
+        int position = mMovablePosition[label];
+
+        if (movable && position == 0) {
+            mMovableLabels[mMovableCount++] = label;
+            mMovablePosition[label] = mMovableCount;
+        } else if (!movable && position != 0) {
+            /* move the last entry into the vacated slot */
+            int last = mMovableLabels[--mMovableCount];
+            mMovableLabels[position - 1] = last;
+            mMovablePosition[last] = position;
+            mMovablePosition[label] = 0;
+        }
+    }
+
+    /**
+     * Sets the game state to finished
+     */
+    public void setFinished() {
+        mFinished = true;
+
+        for (GameObserver observer : mObservers) {
+            observer.onGameFinish();
+        }
+    }
+
+    /**
+     * Tests the input piece to see if it matches the definition of the finish
+     * piece from the game xml file
+     * 
+     * @param piece the piece to test
+     * @return true if the piece matches the finish piece
+     */
+    public boolean isFinishPiece(Piece piece) {
+        if (piece == null)
+            return false;
+        if (mFinishPiece == null)
+            return false;
+
+        return mFinishPiece.equals(piece);
+    }
+
+    /**
+     * Returns the finish piece definition from the game xml file. The piece is
+     * owned by the game and must not be modified.
+     * 
+     * @return the finish piece
+     */
+    public Piece getFinishPiece() {
+        return mFinishPiece;
+    }
+
+    /**
+     * Get the message to display when the game is successfully finished
+     * 
+     * @return the display message
+     */
+    public String getFinishMessage() {
+        return mFinishMessage;
+    }
+
+    /**
+     * Set the value of a specific game board cell
+     * 
+     * @param row the row of the cell to change
+     * @param column the column of the cell to change
+     * @param value the value for the cell
+     * @return
+     */
+    private boolean setCellState(int row, int column, int value) {
+        if (row < 0 || row >= mRows)
+            return false;
+        if (column < 0 || column >= mColumns)
+            return false;
+        mStateHash ^= Zobrist.key(row, column, mBoard.getCellState(row, column))
+                ^ Zobrist.key(row, column, value);
+        mBoard.setCellState(row, column, value);
+        return true;
+    }
+
+    /**
+     * Tests the cell adjacent to the input cell, in the specified direction,
+     * for a piece of a given type. The board engine answers the test, the
+     * BITBOARD engine from the bitset of the type.
+     * 
+     * @param row the row of the cell whose neighbor is tested
+     * @param column the column of the cell
+     * @param direction the direction from the input cell
+     * @param state the piece type
+     * @return true if the neighboring cell holds a piece of the type, false
+     *         if it does not or there is no neighbor
+     */
+    private boolean isNeighborState(int row, int column, Direction direction, int state) {
+        switch (direction) {
+            case UP:
+                return row > 0 && mBoard.hasState(row - 1, column, state);
+            case DOWN:
+                return row < mRows - 1 && mBoard.hasState(row + 1, column, state);
+            case LEFT:
+                return column > 0 && mBoard.hasState(row, column - 1, state);
+            case RIGHT:
+                return column < mColumns - 1 && mBoard.hasState(row, column + 1, state);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Determines the number of empty board spaces from the provided cell, in
+     * the provided direction. The board engine answers it, the BITBOARD
+     * engine with a word-wide scan of its occupancy bitsets.
+     * 
+     * @param row the starting row from which to count empty spaces
+     * @param column the starting column
+     * @param direction the direction to travel, counting empty spaces
+     * @return the number of empty spaces, how far the cell could travel without
+     *         hidding another game piece
+     */
+    private int getCellMobility(int row, int column, Direction direction) {
+        return mBoard.getCellMobility(row, column, direction);
+    }
+
+    /**
+     * Returns the number of moves in the move journal that can be un-done
+     * 
+     * @return number of moves that may be un-done
+     */
+    private int getUndoSize() {
+        return mJournal.size();
+    }
+}
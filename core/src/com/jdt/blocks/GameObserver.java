@@ -31,9 +31,15 @@ public interface GameObserver {
     /** Called when a game piece has been un-moved */
     void onUndoMove(Piece piece);
 
+    /** Called when an un-moved game piece is to be moved again */
+    void onRedoMove(Piece piece);
+
     /** Called when a game has started */
     void onGameStart();
 
     /** Called when a game has finished */
     void onGameFinish();
+
+    /** Called when a game can no longer be finished */
+    void onGameLost();
 }
@@ -16,13 +16,12 @@
 
 package com.jdt.blocks;
 
-import android.content.res.Resources;
-import android.content.res.XmlResourceParser;
-
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -49,7 +48,7 @@ public class GameParser {
      * lookup from board matrix integer to the color used to render the board
      * cell
      */
-    private HashMap mColors;
+    private HashMap<Integer, Integer> mColors;
     /* message to display when game level successfully completed */
     private String mFinishMessage;
     /*
@@ -73,12 +72,23 @@ public class GameParser {
     private static final String TAG_VALUE = "value";
 
     /**
-     * Parses the game definition using an application resource
+     * Parses the game definition from a stream of UTF-8 XML, using the XmlPull
+     * implementation found by XmlPullParserFactory: the platform one on
+     * Android, kXML on a desktop JVM
+     * 
+     * @param in the XML, not closed
+     */
+    public GameParser(InputStream in) {
+        this(newParser(in));
+    }
+
+    /**
+     * Parses the game definition from an XML parser, for example the parser of
+     * an Android XML resource
      * 
-     * @param resources the application resources
-     * @param id the id of the game board resource (XML)
+     * @param parser the parser, positioned at the start of the document
      */
-    public GameParser(Resources resources, int id) {
+    public GameParser(XmlPullParser parser) {
         LinkedList<String> ParseStack = new LinkedList<String>();
         LinkedList<String> BoardCells = new LinkedList<String>();
         LinkedList<String> FinishPieceCells = new LinkedList<String>();
@@ -89,10 +99,9 @@ public class GameParser {
         int columns = 0;
         boolean valid = true;
         Cell cell = new Cell();
-        mColors = new HashMap();
+        mColors = new HashMap<Integer, Integer>();
 
         try {
-            XmlResourceParser parser = resources.getXml(id);
             parser.next();
             int eventType = parser.getEventType();
             while (eventType != XmlPullParser.END_DOCUMENT) {
@@ -179,6 +188,13 @@ public class GameParser {
                         break;
                     }
                     case XmlPullParser.TEXT: {
+                        /*
+                         * compiled resources drop the indentation between
+                         * tags, other parsers report it
+                         */
+                        if (parser.isWhitespace())
+                            break;
+
                         String value = parser.getText();
 
                         /* make a local copy of the stack */
@@ -263,7 +279,7 @@ public class GameParser {
                         int row = Integer.parseInt(cellValues[0]);
                         int column = Integer.parseInt(cellValues[1]);
 
-                        mFinishPiece.mCells.add(new Cell(row, column));
+                        mFinishPiece.addCell(row, column);
                     }
                 }
             }
@@ -273,6 +289,17 @@ public class GameParser {
             mState = null;
     }
 
+    /* Creates an XmlPull parser reading a stream */
+    private static XmlPullParser newParser(InputStream in) {
+        try {
+            XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+            parser.setInput(in, "utf-8");
+            return parser;
+        } catch (XmlPullParserException e) {
+            throw new IllegalStateException("no XmlPull implementation", e);
+        }
+    }
+
     /*
      * Sets the integer value associated with the cell contiguous cells with the
      * value value constitute a game piece
@@ -326,7 +353,7 @@ public class GameParser {
     }
 
     /** Returns the game piece colors defined in the game resource */
-    public HashMap getColors() {
+    public HashMap<Integer, Integer> getColors() {
         return mColors;
     }
 
@@ -39,6 +39,14 @@ public class Mobility implements Cloneable {
     private int mLeft;
 
     public Mobility() {
+        reset();
+    }
+
+    /**
+     * Clears the mobility in all directions, so that it can be determined
+     * again with setMobility
+     */
+    public void reset() {
         mUp = INVALID_MOBILITY;
         mDown = INVALID_MOBILITY;
         mRight = INVALID_MOBILITY;
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+import java.util.Arrays;
+
+import com.jdt.blocks.Game.Direction;
+
+/**
+ * Records the moves of a game, for move-undo and redo. Each move is a record
+ * of primitives in one growable int array: the piece type, the direction and
+ * distance of the move packed into one int, the number of cells, then the
+ * board index (row * columns + column) of each cell of the moved piece as it
+ * was before it merged with its new neighbors, the first cell serving as the
+ * anchor. A move costs a few ints, where keeping the moved Piece costs a cell
+ * array and a Mobility object besides the piece itself.
+ * 
+ * Undone moves stay in the journal past the cursor until redone, or until a
+ * new move replaces them.
+ * 
+ * @author Tom
+ */
+final class MoveJournal {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    /* record fields before the cells */
+    private static final int STATE = 0;
+    private static final int MOTION = 1;
+    private static final int COUNT = 2;
+    private static final int HEADER = 3;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /* number of columns of the game board, to unpack cell indexes */
+    private final int mColumns;
+    /* the move records, back to back */
+    private int[] mData = new int[INITIAL_CAPACITY];
+    /* move i is at mData[mStarts[i]] up to mStarts[i + 1] */
+    private int[] mStarts = new int[INITIAL_CAPACITY / 8];
+    /* number of moves recorded, played or undone */
+    private int mCount;
+    /* number of moves played, the moves past it can be redone */
+    private int mCursor;
+
+    MoveJournal(int columns) {
+        mColumns = columns;
+    }
+
+    /**
+     * Records a move after the moves played so far, dropping the moves that
+     * could be redone
+     * 
+     * @param piece the piece that was moved, at its new location, with the
+     *            mobility it moved with
+     */
+    void add(Piece piece) {
+        int count = piece.getCellCount();
+        int start = mStarts[mCursor];
+
+        if (mCursor + 2 > mStarts.length)
+            mStarts = Arrays.copyOf(mStarts, mStarts.length * 2);
+        if (start + HEADER + count > mData.length)
+            mData = Arrays.copyOf(mData, Math.max(mData.length * 2, start + HEADER + count));
+
+        mData[start + STATE] = piece.mState;
+        mData[start + MOTION] = packMotion(piece.mMobility);
+        mData[start + COUNT] = count;
+        for (int i = 0; i < count; ++i)
+            mData[start + HEADER + i] = piece.getCellRow(i) * mColumns + piece.getCellColumn(i);
+
+        mCount = ++mCursor;
+        mStarts[mCursor] = start + HEADER + count;
+    }
+
+    /** Returns the number of moves played, that can be undone */
+    int size() {
+        return mCursor;
+    }
+
+    /** Tests for moves that can be redone */
+    boolean canRedo() {
+        return mCursor < mCount;
+    }
+
+    /**
+     * Steps back over the last move played
+     * 
+     * @return the piece that was moved, at its new location, with the mobility
+     *         it moved with
+     */
+    Piece undo() {
+        --mCursor;
+        return getPiece(mCursor, false);
+    }
+
+    /**
+     * Steps forward over the first move undone
+     * 
+     * @return the piece to move, at its old location, with the mobility to
+     *         move it with
+     */
+    Piece redo() {
+        Piece piece = getPiece(mCursor, true);
+        ++mCursor;
+        return piece;
+    }
+
+    /**
+     * Steps back over every move played at once, as if each was undone; they
+     * can all be redone
+     */
+    void rewind() {
+        mCursor = 0;
+    }
+
+    /**
+     * Returns the bytes held by the records of the moves in the journal,
+     * spare capacity not counted
+     */
+    long getRecordBytes() {
+        return 4L * (mStarts[mCount] + mCount);
+    }
+
+    /* Rebuilds the piece of a move, before or after it moved */
+    private Piece getPiece(int move, boolean beforeMove) {
+        int start = mStarts[move];
+        int motion = mData[start + MOTION];
+        Direction direction = DIRECTIONS[motion & 3];
+        int distance = motion >>> 2;
+
+        Piece piece = new Piece();
+        piece.mState = mData[start + STATE];
+        for (Direction d : DIRECTIONS)
+            piece.mMobility.setMobility(d == direction ? distance : 0, d);
+
+        int moveRows = beforeMove ? piece.mMobility.getMoveRows() : 0;
+        int moveColumns = beforeMove ? piece.mMobility.getMoveColumns() : 0;
+        int count = mData[start + COUNT];
+        for (int i = 0; i < count; ++i) {
+            int index = mData[start + HEADER + i];
+            piece.addCell(index / mColumns - moveRows, index % mColumns - moveColumns);
+        }
+        return piece;
+    }
+
+    /* Packs the direction and distance of a move into an int */
+    private static int packMotion(Mobility mobility) {
+        int rows = mobility.getMoveRows();
+        int columns = mobility.getMoveColumns();
+
+        Direction direction;
+        if (rows < 0)
+            direction = Direction.UP;
+        else if (rows > 0)
+            direction = Direction.DOWN;
+        else if (columns < 0)
+            direction = Direction.LEFT;
+        else
+            direction = Direction.RIGHT;
+
+        return (Math.abs(rows + columns) << 2) | direction.ordinal();
+    }
+}
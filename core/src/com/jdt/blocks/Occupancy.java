@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.jdt.blocks;
+
+import com.jdt.blocks.Game.Direction;
+
+/**
+ * The occupied cells of a board, kept in two bitsets, one numbering the cells
+ * row by row and one column by column. The number of empty cells between a
+ * cell and the next occupied cell or board edge, in any direction, is then a
+ * scan along its line 64 cells at a time. A changed cell changes one bit in
+ * each bitset, so moving a piece costs only its own cells.
+ *
+ * @author Tom
+ */
+class Occupancy {
+
+    private final int mRows;
+    private final int mColumns;
+    /* occupied cells, indexed row * columns + column */
+    private final long[] mOccupied;
+    /* occupied cells, indexed column * rows + row */
+    private final long[] mOccupiedByColumn;
+
+    /**
+     * Creates an empty board
+     *
+     * @param rows number of rows
+     * @param columns number of columns
+     */
+    Occupancy(int rows, int columns) {
+
+        mRows = rows;
+        mColumns = columns;
+
+        int words = Bits.words(rows * columns);
+        mOccupied = new long[words];
+        mOccupiedByColumn = new long[words];
+    }
+
+    /**
+     * Tests for a piece at the cell
+     *
+     * @param row the cell row
+     * @param column the cell column
+     * @return true if the cell holds a piece
+     */
+    boolean isOccupied(int row, int column) {
+        return Bits.isSet(mOccupied, row * mColumns + column);
+    }
+
+    /**
+     * Sets whether a cell holds a piece
+     *
+     * @param row the cell row
+     * @param column the cell column
+     * @param occupied true if the cell now holds a piece
+     */
+    void setOccupied(int row, int column, boolean occupied) {
+        int index = row * mColumns + column;
+        int indexByColumn = column * mRows + row;
+
+        if (occupied) {
+            Bits.set(mOccupied, index);
+            Bits.set(mOccupiedByColumn, indexByColumn);
+        } else {
+            Bits.clear(mOccupied, index);
+            Bits.clear(mOccupiedByColumn, indexByColumn);
+        }
+    }
+
+    /**
+     * Returns the number of empty board spaces from the cell, in the direction
+     *
+     * @param row the starting row
+     * @param column the starting column
+     * @param direction the direction to travel, counting empty spaces
+     * @return the number of empty spaces before another piece or the board edge
+     */
+    int getFreeRun(int row, int column, Direction direction) {
+
+        switch (direction) {
+            case UP: {
+                int start = column * mRows;
+                int index = start + row;
+                return index - 1 - Bits.previousSetBit(mOccupiedByColumn, index - 1, start);
+            }
+            case DOWN: {
+                int end = (column + 1) * mRows;
+                int index = column * mRows + row;
+                return Bits.nextSetBit(mOccupiedByColumn, index + 1, end) - index - 1;
+            }
+            case LEFT: {
+                int start = row * mColumns;
+                int index = start + column;
+                return index - 1 - Bits.previousSetBit(mOccupied, index - 1, start);
+            }
+            case RIGHT: {
+                int end = (row + 1) * mColumns;
+                int index = row * mColumns + column;
+                return Bits.nextSetBit(mOccupied, index + 1, end) - index - 1;
+            }
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Copies the occupied cells of another board of the same size
+     *
+     * @param other the board to copy
+     */
+    void copyFrom(Occupancy other) {
+        System.arraycopy(other.mOccupied, 0, mOccupied, 0, mOccupied.length);
+        System.arraycopy(other.mOccupiedByColumn, 0, mOccupiedByColumn, 0,
+                mOccupiedByColumn.length);
+    }
+}
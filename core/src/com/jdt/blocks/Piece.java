@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package com.jdt.blocks;
+
+import java.util.Arrays;
+
+/**
+ * Represents a single game piece on the game board
+ * 
+ * @author Tom
+ */
+public class Piece implements Cloneable {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    /*
+     * the cells in the game board grid that together define the piece, each
+     * packed into a long as (row << 32) | column. Once read, the cells are
+     * kept sorted and free of duplicates, so translating every cell by the
+     * same amount keeps them sorted. Only the first mCellCount entries are
+     * used.
+     */
+    private long[] mCells;
+    private int mCellCount;
+    private boolean mSorted;
+    /* the directions that this piece can move */
+    public Mobility mMobility;
+    /* the piece type */
+    public int mState = Game.CELL_EMPTY;
+
+    public Piece() {
+        
+        mCells = new long[INITIAL_CAPACITY];
+        mCellCount = 0;
+        mSorted = true;
+        mMobility = new Mobility();
+    }
+
+    /**
+     * Adds a cell to the piece
+     * 
+     * @param row the cell row
+     * @param column the cell column
+     */
+    public void addCell(int row, int column) {
+
+        if (mCellCount == mCells.length)
+            mCells = Arrays.copyOf(mCells, mCellCount * 2);
+
+        long cell = pack(row, column);
+        if (mCellCount > 0 && cell <= mCells[mCellCount - 1])
+            mSorted = false;
+        mCells[mCellCount++] = cell;
+    }
+
+    /**
+     * Returns the number of cells in the piece
+     * 
+     * @return number of cells
+     */
+    public int getCellCount() {
+
+        sortCells();
+        return mCellCount;
+    }
+
+    /**
+     * Returns the row of a cell of the piece
+     * 
+     * @param index the cell index, from 0 to getCellCount() - 1
+     * @return the cell row
+     */
+    public int getCellRow(int index) {
+
+        sortCells();
+        return (int) (mCells[index] >> 32);
+    }
+
+    /**
+     * Returns the column of a cell of the piece
+     * 
+     * @param index the cell index, from 0 to getCellCount() - 1
+     * @return the cell column
+     */
+    public int getCellColumn(int index) {
+
+        sortCells();
+        return (int) mCells[index];
+    }
+
+    /**
+     * Tests if a board location is one of the cells of the piece
+     * 
+     * @param row the cell row
+     * @param column the cell column
+     * @return true if the cell is part of the piece
+     */
+    public boolean containsCell(int row, int column) {
+
+        sortCells();
+        return Arrays.binarySearch(mCells, 0, mCellCount, pack(row, column)) >= 0;
+    }
+
+    /**
+     * Tests if this piece can move, according to game rules
+     * 
+     * @return true if the piece is movable
+     */
+    public boolean canMove() {
+        
+        return mCellCount != 0 && mMobility.canMove();
+    }
+
+    /**
+     * Moves the piece. A piece will move only if it can move in one direction
+     * and then it will move as far as it can. This is the gameplay.
+     */
+    public void move() {
+        
+        /* get the number of rows and columns to move */
+        int moveRows = mMobility.getMoveRows();
+        int moveCols = mMobility.getMoveColumns();
+
+        /*
+         * translate the cells in place, shifting every cell by the same amount
+         * keeps the cells sorted
+         */
+        long offset = ((long) moveRows << 32) + moveCols;
+        for (int i = 0; i < mCellCount; ++i)
+            mCells[i] += offset;
+    }
+
+    /**
+     * Returns the first cell that is part of this piece
+     * 
+     * @return
+     */
+    public Cell getFirstCell() {
+        
+        return new Cell(getCellRow(0), getCellColumn(0));
+    }
+
+    /**
+     * Create a copy of this object
+     */
+    protected Object clone() throws CloneNotSupportedException {
+        
+        Piece clone = new Piece();
+
+        clone.mState = this.mState;
+
+        clone.mCells = Arrays.copyOf(this.mCells, Math.max(this.mCellCount, INITIAL_CAPACITY));
+        clone.mCellCount = this.mCellCount;
+        clone.mSorted = this.mSorted;
+
+        clone.mMobility = (Mobility) this.mMobility.clone();
+
+        return clone;
+    }
+
+    /**
+     * Tests for this piece being the same as the input piece
+     * 
+     * @param piece the other piece to compare
+     * @return
+     */
+    public boolean equals(Piece piece) {
+        
+        /* self-test */
+        if (this == piece)
+            return true;
+
+        /* same type ? */
+        if (mState != piece.mState)
+            return false;
+
+        /* same cells ? both sets are sorted, so compare in order */
+        sortCells();
+        piece.sortCells();
+
+        if (mCellCount != piece.mCellCount)
+            return false;
+
+        for (int i = 0; i < mCellCount; ++i) {
+            if (mCells[i] != piece.mCells[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    /* Packs a cell location into a long, ordered by row then column */
+    private static long pack(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    /* Sorts the cells and removes duplicates, if cells were added out of order */
+    private void sortCells() {
+
+        if (mSorted)
+            return;
+
+        Arrays.sort(mCells, 0, mCellCount);
+
+        int count = 0;
+        for (int i = 0; i < mCellCount; ++i) {
+            if (count == 0 || mCells[i] != mCells[count - 1])
+                mCells[count++] = mCells[i];
+        }
+        mCellCount = count;
+        mSorted = true;
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of which piece every board cell belongs to. Pieces are the
+ * connected groups of cells with the same state, maintained as a union-find
+ * forest over cell indices (row * columns + column). The root of each tree
+ * identifies the piece and owns the list of its cells, so finding the piece
+ * for a cell is a root lookup and never a flood fill.
+ *
+ * Cells are added and removed a whole piece at a time, as the Game does when
+ * a piece moves. Adding a cell unions it with its neighbors of the same state,
+ * merging pieces. Removing cells may split a piece, so the cells that remain
+ * in each affected piece are labeled again with a flood fill. The fill walks
+ * an int work stack and stamps visited cells with a generation number, so its
+ * arrays are reused without clearing and only the new cell lists are
+ * allocated.
+ *
+ * @author Tom
+ */
+class PieceLabels {
+
+    /* parent value for empty cells */
+    static final int NO_PIECE = -1;
+
+    private final Board mBoard;
+    private final int mRows;
+    private final int mColumns;
+    /* union-find parent of each cell, NO_PIECE for empty cells */
+    private final int[] mParent;
+    /*
+     * cells of each piece, indexed by the root cell. Null for non-root cells,
+     * and for single cell pieces, which hold only the root itself.
+     */
+    private final int[][] mMembers;
+    private final int[] mMemberCount;
+    /* reusable list of pieces affected by a removal, with generation marks */
+    private final int[] mAffected;
+    private final int[] mMarks;
+    private int mGeneration;
+    /* reusable work stack and visited marks for the split flood fill */
+    private int[] mFillStack;
+    private int[] mFillVisited;
+    private int mFillGeneration;
+
+    /**
+     * Creates the labels for the current contents of the board
+     *
+     * @param board the board, which must be kept in sync through add and
+     *            remove
+     */
+    PieceLabels(Board board) {
+
+        mBoard = board;
+        mRows = board.getRows();
+        mColumns = board.getColumns();
+
+        int cells = mRows * mColumns;
+        mParent = new int[cells];
+        mMembers = new int[cells][];
+        mMemberCount = new int[cells];
+        mAffected = new int[cells];
+        mMarks = new int[cells];
+        mGeneration = 0;
+
+        reset();
+    }
+
+    /**
+     * Labels the whole board again, after its cells were replaced without
+     * add and remove
+     */
+    void reset() {
+
+        Arrays.fill(mParent, NO_PIECE);
+        Arrays.fill(mMembers, null);
+        Arrays.fill(mMemberCount, 0);
+
+        for (int row = 0; row < mRows; ++row)
+            for (int col = 0; col < mColumns; ++col)
+                if (mBoard.isOccupied(row, col))
+                    addCell(row * mColumns + col);
+    }
+
+    /**
+     * Returns the piece label for a cell, the index of the root cell of its
+     * piece
+     *
+     * @param index the cell index
+     * @return the piece label, or NO_PIECE if the cell is empty
+     */
+    int getLabel(int index) {
+        if (mParent[index] == NO_PIECE)
+            return NO_PIECE;
+        return find(index);
+    }
+
+    /**
+     * Returns the number of cells in a piece
+     *
+     * @param label the piece label, from getLabel
+     */
+    int getCellCount(int label) {
+        return mMemberCount[label];
+    }
+
+    /**
+     * Returns the index of a cell of a piece
+     *
+     * @param label the piece label, from getLabel
+     * @param i the cell number, from 0 to getCellCount - 1
+     * @return the cell index
+     */
+    int getCell(int label, int i) {
+        int[] members = mMembers[label];
+        return members == null ? label : members[i];
+    }
+
+    /**
+     * Labels the cells of a piece that has just been added to the board
+     *
+     * @param piece the added piece
+     */
+    void add(Piece piece) {
+        for (int i = 0; i < piece.getCellCount(); ++i)
+            addCell(piece.getCellRow(i) * mColumns + piece.getCellColumn(i));
+    }
+
+    /**
+     * Clears the labels of a piece that has just been removed from the board,
+     * splitting pieces that were joined through the removed cells
+     *
+     * @param piece the removed piece
+     */
+    void remove(Piece piece) {
+
+        if (++mGeneration == 0) {
+            Arrays.fill(mMarks, 0);
+            mGeneration = 1;
+        }
+
+        /* collect the pieces that lose cells, before any links change */
+        int affectedCount = 0;
+        for (int i = 0; i < piece.getCellCount(); ++i) {
+            int index = piece.getCellRow(i) * mColumns + piece.getCellColumn(i);
+            if (mParent[index] == NO_PIECE)
+                continue;
+
+            int root = find(index);
+            if (mMarks[root] != mGeneration) {
+                mMarks[root] = mGeneration;
+                mAffected[affectedCount++] = root;
+            }
+        }
+
+        for (int i = 0; i < affectedCount; ++i) {
+            int root = mAffected[i];
+            int[] members = mMembers[root];
+            int count = mMemberCount[root];
+
+            mMembers[root] = null;
+            mMemberCount[root] = 0;
+
+            if (members == null) {
+                /* a single cell piece, its only cell was removed */
+                mParent[root] = NO_PIECE;
+                continue;
+            }
+
+            /* unlink every cell of the piece */
+            for (int j = 0; j < count; ++j)
+                mParent[members[j]] = NO_PIECE;
+
+            /* each fill from a cell still on the board labels one piece */
+            int generation = nextFillGeneration();
+            for (int j = 0; j < count; ++j) {
+                int index = members[j];
+                if (mFillVisited[index] != generation && isOccupied(index))
+                    fillPiece(index, generation);
+            }
+        }
+    }
+
+    /*
+     * Labels the piece holding an unlinked cell, flood filling the unlinked
+     * neighbors of the same state. The seed cell becomes the root. Cells are
+     * pushed at the bottom of the work stack and collected at its top end,
+     * every visited cell is in one place or the other so the two never meet.
+     */
+    private void fillPiece(int root, int generation) {
+
+        int state = getState(root);
+        int end = mFillStack.length;
+        int top = 0;
+        int count = 0;
+
+        mFillVisited[root] = generation;
+        mFillStack[top++] = root;
+
+        while (top > 0) {
+            int index = mFillStack[--top];
+            mParent[index] = root;
+            mFillStack[end - ++count] = index;
+
+            int row = index / mColumns;
+            int column = index - (row * mColumns);
+
+            if (row > 0)
+                top = fillNeighbor(index - mColumns, state, generation, top);
+            if (row < mRows - 1)
+                top = fillNeighbor(index + mColumns, state, generation, top);
+            if (column > 0)
+                top = fillNeighbor(index - 1, state, generation, top);
+            if (column < mColumns - 1)
+                top = fillNeighbor(index + 1, state, generation, top);
+        }
+
+        mMemberCount[root] = count;
+        if (count > 1) {
+            int[] members = new int[count];
+            System.arraycopy(mFillStack, end - count, members, 0, count);
+            mMembers[root] = members;
+        }
+    }
+
+    /*
+     * One step of the split flood fill, pushes the neighboring cell if it is
+     * unlinked, of the same state and not already visited
+     *
+     * @return the new top of the work stack
+     */
+    private int fillNeighbor(int index, int state, int generation, int top) {
+        if (mFillVisited[index] != generation && mParent[index] == NO_PIECE
+                && hasState(index, state)) {
+            mFillVisited[index] = generation;
+            mFillStack[top++] = index;
+        }
+        return top;
+    }
+
+    /*
+     * Starts a new flood fill, returning the mark used for cells visited by
+     * it. The work arrays are allocated on the first split and reused.
+     */
+    private int nextFillGeneration() {
+        if (mFillStack == null) {
+            mFillStack = new int[mRows * mColumns];
+            mFillVisited = new int[mRows * mColumns];
+            mFillGeneration = 0;
+        }
+
+        /* on wrap-around, old marks could collide with new ones */
+        if (++mFillGeneration == 0) {
+            Arrays.fill(mFillVisited, 0);
+            mFillGeneration = 1;
+        }
+        return mFillGeneration;
+    }
+
+    /* Makes the cell a piece of its own, then joins it with its neighbors */
+    private void addCell(int index) {
+
+        mParent[index] = index;
+        mMembers[index] = null;
+        mMemberCount[index] = 1;
+
+        int row = index / mColumns;
+        int column = index - (row * mColumns);
+        int state = mBoard.getCellState(row, column);
+
+        if (row > 0)
+            joinNeighbor(index, index - mColumns, state);
+        if (row < mRows - 1)
+            joinNeighbor(index, index + mColumns, state);
+        if (column > 0)
+            joinNeighbor(index, index - 1, state);
+        if (column < mColumns - 1)
+            joinNeighbor(index, index + 1, state);
+    }
+
+    private void joinNeighbor(int index, int neighbor, int state) {
+        if (mParent[neighbor] != NO_PIECE && hasState(neighbor, state))
+            union(index, neighbor);
+    }
+
+    /*
+     * Joins two pieces, the smaller cell list is appended to the larger. Lists
+     * grow by doubling, so adding a piece cell by cell allocates only a few
+     * times.
+     */
+    private void union(int a, int b) {
+
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB)
+            return;
+
+        if (mMemberCount[rootA] < mMemberCount[rootB]) {
+            int temp = rootA;
+            rootA = rootB;
+            rootB = temp;
+        }
+
+        int countA = mMemberCount[rootA];
+        int countB = mMemberCount[rootB];
+        int[] members = mMembers[rootA];
+        if (members == null) {
+            members = new int[Math.max(4, countA + countB)];
+            members[0] = rootA;
+            mMembers[rootA] = members;
+        } else if (countA + countB > members.length) {
+            members = Arrays.copyOf(members, Math.max(members.length * 2, countA + countB));
+            mMembers[rootA] = members;
+        }
+
+        if (mMembers[rootB] == null)
+            members[countA] = rootB;
+        else
+            System.arraycopy(mMembers[rootB], 0, members, countA, countB);
+
+        mMemberCount[rootA] = countA + countB;
+        mMembers[rootB] = null;
+        mMemberCount[rootB] = 0;
+        mParent[rootB] = rootA;
+    }
+
+    /* Returns the root of the cell's tree, halving the path on the way */
+    private int find(int index) {
+        while (mParent[index] != index) {
+            mParent[index] = mParent[mParent[index]];
+            index = mParent[index];
+        }
+        return index;
+    }
+
+    private int getState(int index) {
+        int row = index / mColumns;
+        return mBoard.getCellState(row, index - (row * mColumns));
+    }
+
+    private boolean isOccupied(int index) {
+        int row = index / mColumns;
+        return mBoard.isOccupied(row, index - (row * mColumns));
+    }
+
+    private boolean hasState(int index, int state) {
+        int row = index / mColumns;
+        return mBoard.hasState(row, index - (row * mColumns), state);
+    }
+}
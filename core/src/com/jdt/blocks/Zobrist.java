@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks;
+
+/**
+ * Zobrist hashing of board states. Every (row, column, piece type) has a
+ * pseudo-random 64 bit key, and the hash of a board is the exclusive-or of the
+ * keys of its occupied cells, so it can be updated one cell at a time. Keys
+ * are computed by mixing the cell location and type rather than read from a
+ * random table, so they need no memory, work for any board size, and are the
+ * same on every device and every run. Hashes can therefore be saved and
+ * compared later.
+ * 
+ * @author Tom
+ */
+public final class Zobrist {
+
+    private static final long ROW_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final long COLUMN_MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+    private static final long STATE_MULTIPLIER = 0x165667B19E3779F9L;
+
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the key for a cell holding a piece type
+     * 
+     * @param row the cell row
+     * @param column the cell column
+     * @param state the piece type, empty cells have a key of 0
+     * @return the key
+     */
+    public static long key(int row, int column, int state) {
+        if (state == Game.CELL_EMPTY)
+            return 0;
+
+        long z = (row + 1) * ROW_MULTIPLIER + (column + 1) * COLUMN_MULTIPLIER + state
+                * STATE_MULTIPLIER;
+
+        /* 64 bit finalizer, spreads every input bit over the whole key */
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the hash of a whole board
+     * 
+     * @param state the board matrix
+     * @param rows number of rows
+     * @param columns number of columns
+     * @return the hash
+     */
+    public static long hash(int[][] state, int rows, int columns) {
+        long hash = 0;
+        for (int row = 0; row < rows; ++row)
+            for (int col = 0; col < columns; ++col)
+                hash ^= key(row, col, state[row][col]);
+        return hash;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+import java.util.Arrays;
+
+/**
+ * Best-first search ordered by moves made plus the FinishHeuristic bound.
+ * The bound never overestimates, so the first move found that forms the
+ * finish piece from a state taken off the queue ends a shortest solution,
+ * while states that cannot lead to a short solution are never expanded.
+ *
+ * Costs are small integers, so the open list is an array of buckets indexed
+ * by estimated total length. States reached again by a shorter path are
+ * re-queued; the stale queue entries are skipped when they come up.
+ *
+ * With symmetry reduction, every state is replaced by its canonical state
+ * before it is stored, see Canonicalizer. The bound does not depend on the
+ * orientation or the renaming, so it is the same for every equivalent state.
+ * New states that a DeadStateAnalyzer finds lost are given an infinite bound
+ * and never queued.
+ *
+ * @author Tom
+ */
+public class AStarSolver implements Solver {
+
+    /* how often, in visited states, the heap use is sampled */
+    private static final int MEMORY_SAMPLE_INTERVAL = 4096;
+
+    private int mMaxStates = Integer.MAX_VALUE - 1;
+    private boolean mReduceSymmetry;
+    private boolean mPruneDeadStates = true;
+
+    /* per state moves made and bound, indexed by state id */
+    private int[] mDepth;
+    private int[] mBound;
+    /* open list buckets of state ids, indexed by estimated total length */
+    private int[][] mBuckets;
+    private int[] mBucketSize;
+
+    /**
+     * Limits the number of states kept, the search gives up unsolved when the
+     * limit is reached
+     *
+     * @param maxStates the state limit
+     */
+    public void setMaxStates(int maxStates) {
+        mMaxStates = maxStates;
+    }
+
+    /**
+     * Sets whether states are replaced by their canonical state, so that
+     * mirror images and renamings of the same state are searched once
+     *
+     * @param reduceSymmetry true to search canonical states
+     */
+    public void setReduceSymmetry(boolean reduceSymmetry) {
+        mReduceSymmetry = reduceSymmetry;
+    }
+
+    /**
+     * Sets whether states found lost by a DeadStateAnalyzer are dropped
+     * instead of expanded, on by default
+     *
+     * @param pruneDeadStates true to prune lost states
+     */
+    public void setPruneDeadStates(boolean pruneDeadStates) {
+        mPruneDeadStates = pruneDeadStates;
+    }
+
+    public Solution solve(Level level) {
+
+        SolverStats stats = new SolverStats();
+        stats.start();
+
+        FinishHeuristic heuristic = new FinishHeuristic(level);
+        Position position = level.newPosition();
+        Position next = level.newPosition();
+        StateStore store = new StateStore(level.getCellCount());
+        int[] moves = new int[level.getCellCount()];
+        Canonicalizer canonicalizer = mReduceSymmetry ? new Canonicalizer(level) : null;
+        DeadStateAnalyzer analyzer = mPruneDeadStates ? new DeadStateAnalyzer(level) : null;
+
+        mDepth = new int[1024];
+        mBound = new int[1024];
+        mBuckets = new int[16][];
+        mBucketSize = new int[16];
+
+        try {
+            if (canonicalizer != null) {
+                canonicalizer.canonicalize(position);
+                stats.addRepresented(canonicalizer.getOrbitSize());
+            }
+            int start = store.add(position, StateStore.NO_PARENT, 0);
+            setState(start, 0, heuristic.estimate(position));
+            if (mBound[start] != FinishHeuristic.UNSOLVABLE)
+                push(mBound[start], start);
+
+            for (int f = 0; f < mBuckets.length; ++f) {
+                while (mBucketSize[f] > 0) {
+                    int id = mBuckets[f][--mBucketSize[f]];
+                    int depth = mDepth[id];
+                    /* skip entries for states since reached by a shorter path */
+                    if (depth + mBound[id] != f)
+                        continue;
+
+                    store.load(id, position);
+                    stats.addVisited();
+
+                    int count = position.findMoves(moves);
+                    stats.addGenerated(count);
+
+                    for (int i = 0; i < count; ++i) {
+                        next.copyFrom(position);
+                        next.move(moves[i]);
+
+                        if (next.isFinished()) {
+                            stats.setStored(store.size());
+                            stats.stop();
+                            return canonicalizer == null ? Solution.fromStore(level, store, id,
+                            moves[i], stats) : Solution.fromCanonicalStore(level, store, id,
+                            canonicalizer, stats);
+                        }
+
+                        if (canonicalizer != null)
+                            canonicalizer.canonicalize(next);
+
+                        int child = store.add(next, id, moves[i]);
+                        if (child != StateStore.PRESENT) {
+                            if (canonicalizer != null)
+                                stats.addRepresented(canonicalizer.getOrbitSize());
+                            setState(child, depth + 1, heuristic.estimate(next));
+                            if (mBound[child] != FinishHeuristic.UNSOLVABLE
+                                    && analyzer != null && analyzer.canPrune(next)) {
+                                mBound[child] = FinishHeuristic.UNSOLVABLE;
+                                stats.addPruned();
+                            }
+                            if (mBound[child] == FinishHeuristic.UNSOLVABLE)
+                                continue;
+                        } else {
+                            child = store.find(next);
+                            if (mBound[child] == FinishHeuristic.UNSOLVABLE
+                                    || mDepth[child] <= depth + 1)
+                                continue;
+                            store.setParent(child, id, moves[i]);
+                            mDepth[child] = depth + 1;
+                        }
+
+                        /*
+                         * one move lowers the moves left by at most one, so the
+                         * parent bound less one also bounds the child, and keeps
+                         * the estimated length from falling below the bucket
+                         * being expanded
+                         */
+                        mBound[child] = Math.max(mBound[child], mBound[id] - 1);
+                        push(depth + 1 + mBound[child], child);
+                    }
+
+                    if (store.size() >= mMaxStates
+                            || Thread.currentThread().isInterrupted()) {
+                        stats.setStored(store.size());
+                        stats.stop();
+                        return new Solution(level, null, stats);
+                    }
+                    if (stats.getStatesVisited() % MEMORY_SAMPLE_INTERVAL == 0)
+                        stats.sampleMemory();
+                }
+            }
+
+            stats.setStored(store.size());
+            stats.stop();
+            return new Solution(level, null, stats);
+
+        } finally {
+            mDepth = null;
+            mBound = null;
+            mBuckets = null;
+            mBucketSize = null;
+        }
+    }
+
+    private void setState(int id, int depth, int bound) {
+        if (id >= mDepth.length) {
+            mDepth = Arrays.copyOf(mDepth, mDepth.length * 2);
+            mBound = Arrays.copyOf(mBound, mBound.length * 2);
+        }
+        mDepth[id] = depth;
+        mBound[id] = bound;
+    }
+
+    private void push(int f, int id) {
+        if (f >= mBuckets.length) {
+            int length = Math.max(f + 1, mBuckets.length * 2);
+            mBuckets = Arrays.copyOf(mBuckets, length);
+            mBucketSize = Arrays.copyOf(mBucketSize, length);
+        }
+        int[] bucket = mBuckets[f];
+        if (bucket == null) {
+            bucket = new int[256];
+            mBuckets[f] = bucket;
+        } else if (mBucketSize[f] == bucket.length) {
+            bucket = Arrays.copyOf(bucket, bucket.length * 2);
+            mBuckets[f] = bucket;
+        }
+        bucket[mBucketSize[f]++] = id;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.solver;
+
+/**
+ * Many boards of one level, stepped together. The cells of every board are
+ * kept in one flat array, board after board, with the hash and finished flag
+ * of each board in parallel arrays, and one call applies a tap to every
+ * board. The rules are those of BoardRules, the same as Position and Game.
+ *
+ * Stepping allocates nothing. Batches are not thread safe, but separate
+ * batches may be stepped on separate threads.
+ *
+ * @author Tom
+ */
+public final class BatchBoards {
+
+    /** A tap that leaves a board unchanged */
+    public static final int NO_TAP = -1;
+
+    private final Level mLevel;
+    private final int mCount;
+    private final int mSize;
+    private final BoardRules mRules;
+
+    /* the cells of board b are mCells[b * mSize] up to mCells[(b + 1) * mSize] */
+    private final int[] mCells;
+    private final long[] mHashes;
+    private final boolean[] mFinished;
+    /* the start of the level, copied to reset a board */
+    private final int[] mStart;
+    private final long mStartHash;
+
+    /**
+     * Creates boards at the start of a level
+     *
+     * @param level the level
+     * @param count number of boards
+     */
+    public BatchBoards(Level level, int count) {
+
+        if (count <= 0 || (long) count * level.getCellCount() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("illegal board count");
+
+        mLevel = level;
+        mCount = count;
+        mSize = level.getCellCount();
+        mRules = new BoardRules(level);
+
+        mStart = new int[mSize];
+        for (int i = 0; i < mSize; ++i)
+            mStart[i] = level.getCell(i);
+        mStartHash = mRules.computeHash(mStart, 0);
+
+        mCells = new int[count * mSize];
+        mHashes = new long[count];
+        mFinished = new boolean[count];
+        for (int board = 0; board < count; ++board)
+            reset(board);
+    }
+
+    /** Returns the level of the boards */
+    public Level getLevel() {
+        return mLevel;
+    }
+
+    /** Returns the number of boards */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Returns a board to the start of the level
+     *
+     * @param board the board
+     */
+    public void reset(int board) {
+        System.arraycopy(mStart, 0, mCells, board * mSize, mSize);
+        mHashes[board] = mStartHash;
+        mFinished[board] = false;
+    }
+
+    /**
+     * Sets every cell of a board
+     *
+     * @param board the board
+     * @param cells the cell states, row by row
+     */
+    public void setCells(int board, int[] cells) {
+        System.arraycopy(cells, 0, mCells, board * mSize, mSize);
+        mHashes[board] = mRules.computeHash(mCells, board * mSize);
+        mFinished[board] = false;
+    }
+
+    /**
+     * Copies every cell of a board
+     *
+     * @param board the board
+     * @param cells receives the cell states, row by row
+     */
+    public void getCells(int board, int[] cells) {
+        System.arraycopy(mCells, board * mSize, cells, 0, mSize);
+    }
+
+    /** Returns the state of a cell of a board */
+    public int getCell(int board, int index) {
+        return mCells[board * mSize + index];
+    }
+
+    /** Returns the Zobrist hash of a board, the same value Game.getStateHash returns */
+    public long getHash(int board) {
+        return mHashes[board];
+    }
+
+    /** Returns true if the last move on a board formed the finish piece */
+    public boolean isFinished(int board) {
+        return mFinished[board];
+    }
+
+    /**
+     * Applies one tap to every board. A finished board is left unchanged.
+     *
+     * @param taps the cell to tap on each board, or NO_TAP
+     * @param moved receives true for each board where a piece moved, may be
+     *            null
+     * @param finished receives true for each board that is finished, may be
+     *            null
+     * @return the number of boards where a piece moved
+     */
+    public int step(int[] taps, boolean[] moved, boolean[] finished) {
+        int count = 0;
+        for (int board = 0, base = 0; board < mCount; ++board, base += mSize) {
+            boolean boardMoved = false;
+            int tap = taps[board];
+            if (tap != NO_TAP && !mFinished[board] && mRules.move(mCells, base, tap)) {
+                mHashes[board] ^= mRules.getHashChange();
+                mFinished[board] = mRules.isFinished();
+                boardMoved = true;
+                ++count;
+            }
+            if (moved != null)
+                moved[board] = boardMoved;
+            if (finished != null)
+                finished[board] = mFinished[board];
+        }
+        return count;
+    }
+
+    /**
+     * Finds every legal move on a board, as Position.findMoves does
+     *
+     * @param board the board
+     * @param moves receives the moves, must be as long as the board
+     * @return the number of moves
+     */
+    public int findMoves(int board, int[] moves) {
+        return mRules.findMoves(mCells, board * mSize, moves);
+    }
+
+    /**
+     * Tests if tapping a cell of a board would move a piece
+     *
+     * @param board the board
+     * @param index the tapped cell
+     * @return true if the cell is part of a piece that can move
+     */
+    public boolean canMove(int board, int index) {
+        return mRules.canMove(mCells, board * mSize, index);
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.solver;
+
+import com.jdt.blocks.Game;
+import com.jdt.blocks.Game.Direction;
+import com.jdt.blocks.Mobility;
+import com.jdt.blocks.Zobrist;
+
+import java.util.Arrays;
+
+/**
+ * The game rules applied to boards of a level held in flat arrays of cell
+ * states, row by row, starting at any offset, so that one array can hold
+ * many boards. Pieces, mobility, movement and merging follow the Game, Piece
+ * and Mobility rules exactly: a piece moves only when it is free to move in
+ * one direction, as far as it can, and after the move the piece it merged
+ * into is compared with the finish piece.
+ *
+ * The rules own reusable work arrays, so applying moves allocates nothing.
+ * They are not thread safe.
+ *
+ * @author Tom
+ */
+final class BoardRules {
+
+    private final Level mLevel;
+    private final int mRows;
+    private final int mColumns;
+    private final int mSize;
+
+    /* work arrays for finding pieces */
+    private final int[] mStack;
+    private final int[] mMarks;
+    private int mGeneration;
+    private final int[] mPiece;
+    private int mPieceSize;
+    private final Mobility mMobility;
+
+    /* results of the last move */
+    private long mHashChange;
+    private boolean mFinished;
+
+    BoardRules(Level level) {
+        mLevel = level;
+        mRows = level.getRows();
+        mColumns = level.getColumns();
+        mSize = level.getCellCount();
+
+        mStack = new int[mSize];
+        mMarks = new int[mSize];
+        mPiece = new int[mSize];
+        mMobility = new Mobility();
+    }
+
+    /**
+     * Finds every legal move on a board. Each movable piece appears once,
+     * identified by its lowest cell index.
+     *
+     * @param cells holds the board
+     * @param base the index of the first cell of the board in cells
+     * @param moves receives the moves, must be as long as the board
+     * @return the number of moves
+     */
+    int findMoves(int[] cells, int base, int[] moves) {
+        int count = 0;
+        int generation = nextGeneration();
+
+        for (int index = 0; index < mSize; ++index) {
+            if (cells[base + index] < Game.CELL_STATE_MIN || mMarks[index] == generation)
+                continue;
+
+            /* scanning in index order, this is the lowest cell of a new piece */
+            collectPiece(cells, base, index, generation);
+            if (mMobility.canMove())
+                moves[count++] = index;
+        }
+        return count;
+    }
+
+    /**
+     * Tests if tapping a cell would move a piece
+     *
+     * @param cells holds the board
+     * @param base the index of the first cell of the board in cells
+     * @param index the tapped cell
+     * @return true if the cell is part of a piece that can move
+     */
+    boolean canMove(int[] cells, int base, int index) {
+        if (cells[base + index] < Game.CELL_STATE_MIN)
+            return false;
+
+        collectPiece(cells, base, index, nextGeneration());
+        return mMobility.canMove();
+    }
+
+    /**
+     * Applies a move, tapping a cell. If the piece at the cell can move it is
+     * moved as far as it can in its one free direction, merging with pieces
+     * of the same type, and the resulting piece is tested against the finish
+     * piece; see getHashChange and isFinished.
+     *
+     * @param cells holds the board
+     * @param base the index of the first cell of the board in cells
+     * @param index the tapped cell
+     * @return true if a piece moved
+     */
+    boolean move(int[] cells, int base, int index) {
+        mHashChange = 0;
+        mFinished = false;
+
+        int state = cells[base + index];
+        if (state < Game.CELL_STATE_MIN)
+            return false;
+
+        collectPiece(cells, base, index, nextGeneration());
+        if (!mMobility.canMove())
+            return false;
+
+        int shift = mMobility.getMoveRows() * mColumns + mMobility.getMoveColumns();
+
+        /* lift the piece, then drop it at its new location */
+        long hash = 0;
+        for (int i = 0; i < mPieceSize; ++i) {
+            int cell = mPiece[i];
+            cells[base + cell] = Game.CELL_EMPTY;
+            hash ^= Zobrist.key(cell / mColumns, cell % mColumns, state);
+        }
+        for (int i = 0; i < mPieceSize; ++i) {
+            int cell = mPiece[i] + shift;
+            cells[base + cell] = state;
+            hash ^= Zobrist.key(cell / mColumns, cell % mColumns, state);
+        }
+        mHashChange = hash;
+
+        /* the moved piece may have merged, test the piece it is now part of */
+        collectPiece(cells, base, index + shift, nextGeneration());
+        mFinished = isFinishPiece(state);
+        return true;
+    }
+
+    /** Returns the value the last move XORed into the board hash */
+    long getHashChange() {
+        return mHashChange;
+    }
+
+    /** Returns true if the last move formed the finish piece */
+    boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * Returns the Zobrist hash of a board, the same value Game.getStateHash
+     * returns
+     */
+    long computeHash(int[] cells, int base) {
+        long hash = 0;
+        for (int i = 0; i < mSize; ++i)
+            hash ^= Zobrist.key(i / mColumns, i % mColumns, cells[base + i]);
+        return hash;
+    }
+
+    /**
+     * Collects the cells of the piece at a cell into the piece work array, and
+     * its mobility, the same way Game.getPiece does
+     */
+    private void collectPiece(int[] cells, int base, int start, int generation) {
+        int state = cells[base + start];
+        int top = 0;
+
+        mMobility.reset();
+        mPieceSize = 0;
+        mMarks[start] = generation;
+        mStack[top++] = start;
+
+        while (top > 0) {
+            int index = mStack[--top];
+            int row = index / mColumns;
+            int column = index - (row * mColumns);
+
+            mPiece[mPieceSize++] = index;
+
+            top = visit(cells, base, state, row, column, Direction.UP, generation, top);
+            top = visit(cells, base, state, row, column, Direction.DOWN, generation, top);
+            top = visit(cells, base, state, row, column, Direction.LEFT, generation, top);
+            top = visit(cells, base, state, row, column, Direction.RIGHT, generation, top);
+        }
+    }
+
+    /*
+     * Pushes the neighboring cell if it is part of the piece, otherwise applies
+     * the distance to the nearest barrier to the piece mobility
+     */
+    private int visit(int[] cells, int base, int state, int row, int column,
+            Direction direction, int generation, int top) {
+        int rowStep = 0;
+        int columnStep = 0;
+
+        switch (direction) {
+            case UP:
+                rowStep = -1;
+                break;
+            case DOWN:
+                rowStep = 1;
+                break;
+            case LEFT:
+                columnStep = -1;
+                break;
+            case RIGHT:
+                columnStep = 1;
+                break;
+        }
+
+        int r = row + rowStep;
+        int c = column + columnStep;
+        if (r >= 0 && r < mRows && c >= 0 && c < mColumns
+                && cells[base + r * mColumns + c] == state) {
+            int neighbor = r * mColumns + c;
+            if (mMarks[neighbor] != generation) {
+                mMarks[neighbor] = generation;
+                mStack[top++] = neighbor;
+            }
+            return top;
+        }
+
+        /* count empty cells up to the board end or another piece */
+        int mobility = 0;
+        while (r >= 0 && r < mRows && c >= 0 && c < mColumns
+                && cells[base + r * mColumns + c] == Game.CELL_EMPTY) {
+            ++mobility;
+            r += rowStep;
+            c += columnStep;
+        }
+        mMobility.setMobility(mobility, direction);
+        return top;
+    }
+
+    /* Tests the collected piece against the finish piece */
+    private boolean isFinishPiece(int state) {
+        if (state != mLevel.getFinishState())
+            return false;
+        if (mPieceSize != mLevel.getFinishCellCount())
+            return false;
+
+        Arrays.sort(mPiece, 0, mPieceSize);
+        for (int i = 0; i < mPieceSize; ++i) {
+            if (mPiece[i] != mLevel.getFinishCell(i))
+                return false;
+        }
+        return true;
+    }
+
+    private int nextGeneration() {
+        if (++mGeneration == 0) {
+            Arrays.fill(mMarks, 0);
+            mGeneration = 1;
+        }
+        return mGeneration;
+    }
+}
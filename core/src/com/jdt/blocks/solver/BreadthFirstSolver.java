@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+import java.util.BitSet;
+
+/**
+ * Exhaustive breadth-first search. States are expanded in order of distance
+ * from the start, so the first move found that forms the finish piece ends a
+ * shortest solution. Every distinct state reached is kept in a StateStore,
+ * which is also the search queue: states are expanded in id order.
+ *
+ * With symmetry reduction, every state is replaced by its canonical state
+ * before it is stored, see Canonicalizer. New states that a
+ * DeadStateAnalyzer finds lost are stored but never expanded.
+ *
+ * @author Tom
+ */
+public class BreadthFirstSolver implements Solver {
+
+    /* how often, in visited states, the heap use is sampled */
+    private static final int MEMORY_SAMPLE_INTERVAL = 4096;
+
+    private int mMaxStates = Integer.MAX_VALUE - 1;
+    private boolean mReduceSymmetry;
+    private boolean mPruneDeadStates = true;
+
+    /**
+     * Limits the number of states kept, the search gives up unsolved when the
+     * limit is reached
+     *
+     * @param maxStates the state limit
+     */
+    public void setMaxStates(int maxStates) {
+        mMaxStates = maxStates;
+    }
+
+    /**
+     * Sets whether states are replaced by their canonical state, so that
+     * mirror images and renamings of the same state are searched once
+     *
+     * @param reduceSymmetry true to search canonical states
+     */
+    public void setReduceSymmetry(boolean reduceSymmetry) {
+        mReduceSymmetry = reduceSymmetry;
+    }
+
+    /**
+     * Sets whether states found lost by a DeadStateAnalyzer are dropped
+     * instead of expanded, on by default
+     *
+     * @param pruneDeadStates true to prune lost states
+     */
+    public void setPruneDeadStates(boolean pruneDeadStates) {
+        mPruneDeadStates = pruneDeadStates;
+    }
+
+    public Solution solve(Level level) {
+
+        SolverStats stats = new SolverStats();
+        stats.start();
+
+        Position position = level.newPosition();
+        Position next = level.newPosition();
+        StateStore store = new StateStore(level.getCellCount());
+        int[] moves = new int[level.getCellCount()];
+        Canonicalizer canonicalizer = mReduceSymmetry ? new Canonicalizer(level) : null;
+        DeadStateAnalyzer analyzer = mPruneDeadStates ? new DeadStateAnalyzer(level) : null;
+        BitSet lost = new BitSet();
+
+        if (canonicalizer != null) {
+            canonicalizer.canonicalize(position);
+            stats.addRepresented(canonicalizer.getOrbitSize());
+        }
+        store.add(position, StateStore.NO_PARENT, 0);
+
+        for (int id = 0; id < store.size(); ++id) {
+            if (lost.get(id))
+                continue;
+
+            store.load(id, position);
+            stats.addVisited();
+
+            int count = position.findMoves(moves);
+            stats.addGenerated(count);
+
+            for (int i = 0; i < count; ++i) {
+                next.copyFrom(position);
+                next.move(moves[i]);
+
+                if (next.isFinished()) {
+                    stats.setStored(store.size());
+                    stats.stop();
+                    return canonicalizer == null ? Solution.fromStore(level, store, id,
+                            moves[i], stats) : Solution.fromCanonicalStore(level, store, id,
+                            canonicalizer, stats);
+                }
+
+                if (canonicalizer != null)
+                    canonicalizer.canonicalize(next);
+
+                int child = store.add(next, id, moves[i]);
+                if (child == StateStore.PRESENT)
+                    continue;
+                if (canonicalizer != null)
+                    stats.addRepresented(canonicalizer.getOrbitSize());
+
+                /* lost states stay in the store, so they are only analyzed once */
+                if (analyzer != null && analyzer.canPrune(next)) {
+                    lost.set(child);
+                    stats.addPruned();
+                }
+            }
+
+            if (store.size() >= mMaxStates || Thread.currentThread().isInterrupted())
+                break;
+            if (id % MEMORY_SAMPLE_INTERVAL == 0)
+                stats.sampleMemory();
+        }
+
+        stats.setStored(store.size());
+        stats.stop();
+        return new Solution(level, null, stats);
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+import com.jdt.blocks.Game;
+
+import java.util.Arrays;
+
+/**
+ * Maps board states to a canonical representative of the states that play
+ * the same. Two kinds of equivalence are used:
+ *
+ * Board symmetries. The rules do not depend on orientation, so a mirrored or
+ * rotated board plays the same once its finish cells are mirrored or rotated
+ * with it. The symmetries of the board shape (4 for rectangles, 8 for
+ * squares) that map the finish cells onto themselves are detected when the
+ * canonicalizer is created.
+ *
+ * Interchangeable types. Pieces only merge with pieces of the same type, and
+ * only the finish type is checked at the end, so the other types can be
+ * renamed freely. Types are renamed in order of first appearance.
+ *
+ * The canonical state is the smallest, cell by cell, of the renamed images of
+ * the board under every detected symmetry. The finish type, the empty cells
+ * and the finish cells are never changed, so a canonical state is finished
+ * exactly when the original is.
+ *
+ * @author Tom
+ */
+public final class Canonicalizer {
+
+    private final int mFinishState;
+    /* for each symmetry, the source cell of each cell of the image */
+    private final int[][] mSources;
+    /* the non-finish types of the level, in increasing order */
+    private final int[] mTypes;
+    /* the number of states a canonical state stands for, before symmetries */
+    private final double mOrbitScale;
+    private double mOrbitSize;
+
+    /* work arrays */
+    private final int[] mRename;
+    private final int[] mRenamed;
+    private int mGeneration;
+    private int[] mBest;
+    private int[] mCandidate;
+
+    /**
+     * Detects the symmetries and interchangeable types of a level
+     *
+     * @param level the level
+     */
+    public Canonicalizer(Level level) {
+
+        int rows = level.getRows();
+        int columns = level.getColumns();
+        int size = level.getCellCount();
+        mFinishState = level.getFinishState();
+
+        boolean[] finish = new boolean[size];
+        for (int i = 0; i < level.getFinishCellCount(); ++i)
+            finish[level.getFinishCell(i)] = true;
+
+        int[][] sources = new int[8][];
+        int count = 0;
+        for (int symmetry = 0; symmetry < (rows == columns ? 8 : 4); ++symmetry) {
+            int[] source = new int[size];
+            boolean valid = true;
+            for (int index = 0; index < size && valid; ++index) {
+                int image = transform(symmetry, index / columns, index % columns, rows, columns);
+                source[image] = index;
+                valid = finish[image] == finish[index];
+            }
+            if (valid)
+                sources[count++] = source;
+        }
+        mSources = Arrays.copyOf(sources, count);
+
+        /* piece types are never created or destroyed, the start has them all */
+        int maxType = mFinishState;
+        for (int i = 0; i < size; ++i)
+            maxType = Math.max(maxType, level.getCell(i));
+        boolean[] present = new boolean[maxType + 1];
+        int typeCount = 0;
+        for (int i = 0; i < size; ++i) {
+            int state = level.getCell(i);
+            if (state >= Game.CELL_STATE_MIN && state != mFinishState && !present[state]) {
+                present[state] = true;
+                ++typeCount;
+            }
+        }
+        mTypes = new int[typeCount];
+        for (int type = 0, i = 0; type <= maxType; ++type) {
+            if (present[type])
+                mTypes[i++] = type;
+        }
+
+        double permutations = 1;
+        for (int i = 2; i <= typeCount; ++i)
+            permutations *= i;
+        mOrbitScale = permutations * count;
+
+        mRename = new int[maxType + 1];
+        mRenamed = new int[maxType + 1];
+        mBest = new int[size];
+        mCandidate = new int[size];
+    }
+
+    /** Returns the number of board symmetries found, including the identity */
+    public int getSymmetryCount() {
+        return mSources.length;
+    }
+
+    /** Returns the number of piece types that can be renamed */
+    public int getInterchangeableTypeCount() {
+        return mTypes.length;
+    }
+
+    /** Returns true if every state is its own canonical state */
+    public boolean isTrivial() {
+        return mSources.length == 1 && mTypes.length < 2;
+    }
+
+    /**
+     * Replaces a position with its canonical state
+     *
+     * @param position the position, which loses its finished flag
+     */
+    public void canonicalize(Position position) {
+
+        int size = position.getCellCount();
+        int fixed = 0;
+
+        for (int symmetry = 0; symmetry < mSources.length; ++symmetry) {
+            int[] source = mSources[symmetry];
+            int order = symmetry == 0 ? -1 : 0;
+
+            nextGeneration();
+            int next = 0;
+            for (int i = 0; i < size; ++i) {
+                int state = position.getCell(source[i]);
+                if (state >= Game.CELL_STATE_MIN && state != mFinishState) {
+                    if (mRenamed[state] != mGeneration) {
+                        mRenamed[state] = mGeneration;
+                        mRename[state] = mTypes[next++];
+                    }
+                    state = mRename[state];
+                }
+                mCandidate[i] = state;
+
+                if (order == 0)
+                    order = state - mBest[i];
+            }
+
+            if (order < 0) {
+                int[] swap = mBest;
+                mBest = mCandidate;
+                mCandidate = swap;
+                fixed = 1;
+            } else if (order == 0) {
+                ++fixed;
+            }
+        }
+
+        /* the symmetries that give the same state form its stabilizer */
+        mOrbitSize = mOrbitScale / fixed;
+
+        for (int i = 0; i < size; ++i) {
+            if (position.getCell(i) != mBest[i]) {
+                position.setCells(mBest);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of board states equivalent to the position last
+     * canonicalized, counting every symmetry and renaming of types
+     */
+    public double getOrbitSize() {
+        return mOrbitSize;
+    }
+
+    private void nextGeneration() {
+        if (++mGeneration == 0) {
+            Arrays.fill(mRenamed, 0);
+            mGeneration = 1;
+        }
+    }
+
+    /* Returns the image of a cell under one of the 8 symmetries of the square */
+    private static int transform(int symmetry, int row, int column, int rows, int columns) {
+        int r;
+        int c;
+        switch (symmetry) {
+            case 1:
+                r = row;
+                c = columns - 1 - column;
+                break;
+            case 2:
+                r = rows - 1 - row;
+                c = column;
+                break;
+            case 3:
+                r = rows - 1 - row;
+                c = columns - 1 - column;
+                break;
+            case 4:
+                r = column;
+                c = row;
+                break;
+            case 5:
+                r = columns - 1 - column;
+                c = rows - 1 - row;
+                break;
+            case 6:
+                r = column;
+                c = rows - 1 - row;
+                break;
+            case 7:
+                r = columns - 1 - column;
+                c = row;
+                break;
+            default:
+                r = row;
+                c = column;
+                break;
+        }
+        return r * columns + c;
+    }
+}
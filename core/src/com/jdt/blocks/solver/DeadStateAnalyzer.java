@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+import com.jdt.blocks.Game;
+
+import java.util.Arrays;
+
+/**
+ * Finds board states from which the level can never be finished.
+ *
+ * The key fact is that some pieces are frozen for good. A piece moves only
+ * when it is free in exactly one direction, so a piece that is blocked in all
+ * 4 directions by the board edge or by pieces that never move can never move
+ * either; other pieces may merge into it, but the merged piece is blocked by
+ * the same cells. The frozen pieces are the largest set of pieces that are
+ * each blocked that way by the edge and by each other, found by starting
+ * with every piece and dropping pieces until the set is stable.
+ *
+ * A state is lost when:
+ * <ul>
+ * <li>there are fewer cells of the finish type than finish cells; pieces never
+ * change type, so this is fixed for the whole level</li>
+ * <li>a frozen piece of another type holds a finish cell</li>
+ * <li>a frozen piece of the finish type reaches outside the finish cells while
+ * holding or touching one, so the finish piece could never form without
+ * merging with it</li>
+ * <li>some finish cell cannot be covered by any piece of the finish type, see
+ * FinishHeuristic</li>
+ * <li>no piece can move</li>
+ * </ul>
+ *
+ * @author Tom
+ */
+public final class DeadStateAnalyzer {
+
+    /** The outcome of an analysis */
+    public enum Verdict {
+        /** the state may still lead to the finish */
+        OPEN,
+        /** there are fewer cells of the finish type than finish cells */
+        TOO_FEW_FINISH_CELLS,
+        /** a frozen piece of another type holds a finish cell */
+        FINISH_CELL_BLOCKED,
+        /** a frozen piece of the finish type would merge with the finish piece */
+        FINISH_TYPE_STUCK,
+        /** some finish cell can never be covered */
+        FINISH_UNREACHABLE,
+        /** no piece can move */
+        NO_MOVES
+    }
+
+    private final int mRows;
+    private final int mColumns;
+    private final int mFinishState;
+    private final boolean[] mFinish;
+    private final int[] mFinishCells;
+    private final boolean mTooFewFinishCells;
+    private final FinishHeuristic mHeuristic;
+
+    /* the most pieces labeled around the candidate pieces */
+    private static final int MAX_PIECES = 64;
+
+    /* work arrays: the piece of each labeled cell, and the cells of each piece */
+    private final int[] mLabels;
+    private final int[] mLabelGeneration;
+    private int mGeneration;
+    private final int[] mCandidates;
+    private final int[] mStack;
+    private final int[] mPieceStart;
+    private final int[] mPieceCells;
+    private final boolean[] mFrozen;
+    private int mPieceCount;
+    private final int[] mMoves;
+
+    /**
+     * Creates an analyzer for the states of a level
+     *
+     * @param level the level
+     */
+    public DeadStateAnalyzer(Level level) {
+
+        mRows = level.getRows();
+        mColumns = level.getColumns();
+        mFinishState = level.getFinishState();
+
+        int size = level.getCellCount();
+        mFinish = new boolean[size];
+        mFinishCells = new int[level.getFinishCellCount()];
+        for (int i = 0; i < mFinishCells.length; ++i) {
+            mFinishCells[i] = level.getFinishCell(i);
+            mFinish[mFinishCells[i]] = true;
+        }
+
+        int finishTypeCells = 0;
+        for (int i = 0; i < size; ++i) {
+            if (level.getCell(i) == mFinishState)
+                ++finishTypeCells;
+        }
+        mTooFewFinishCells = finishTypeCells < level.getFinishCellCount();
+        mHeuristic = new FinishHeuristic(level);
+
+        mLabels = new int[size];
+        mLabelGeneration = new int[size];
+        mCandidates = new int[mFinishCells.length * 5];
+        mStack = new int[size];
+        mPieceStart = new int[MAX_PIECES + 1];
+        mPieceCells = new int[size];
+        mFrozen = new boolean[MAX_PIECES];
+        mMoves = new int[size];
+    }
+
+    /**
+     * Tests if the level can no longer be finished from a state
+     *
+     * @param position the state, not finished
+     * @return true if the state is lost
+     */
+    public boolean isLost(Position position) {
+        return analyze(position) != Verdict.OPEN;
+    }
+
+    /**
+     * Tests if a search can drop a state, skipping the test for a state with
+     * no moves, which the search finds anyway when it expands the state
+     *
+     * @param position the state, not finished
+     * @return true if the state is lost
+     */
+    public boolean canPrune(Position position) {
+        return analyze(position, false) != Verdict.OPEN;
+    }
+
+    /**
+     * Analyzes a state
+     *
+     * @param position the state, not finished
+     * @return OPEN, or the reason the state is lost
+     */
+    public Verdict analyze(Position position) {
+        return analyze(position, true);
+    }
+
+    private Verdict analyze(Position position, boolean checkMoves) {
+
+        if (mTooFewFinishCells)
+            return Verdict.TOO_FEW_FINISH_CELLS;
+
+        if (mHeuristic.estimate(position) == FinishHeuristic.UNSOLVABLE)
+            return Verdict.FINISH_UNREACHABLE;
+
+        int candidates = findCandidates(position);
+        if (candidates > 0) {
+            Verdict verdict = analyzeFrozenPieces(position, candidates);
+            if (verdict != Verdict.OPEN)
+                return verdict;
+        }
+
+        if (checkMoves && position.findMoves(mMoves) == 0)
+            return Verdict.NO_MOVES;
+
+        return Verdict.OPEN;
+    }
+
+    /*
+     * Collects a cell of each piece that would make the state lost if it
+     * were frozen: pieces of another type on finish cells, and pieces of the
+     * finish type that reach from a finish cell, or its neighbor, to another
+     * cell. Only the finish cells and their neighbors are looked at, so the
+     * frozen piece analysis is skipped cheaply for most states.
+     */
+    private int findCandidates(Position position) {
+        int count = 0;
+        for (int i = 0; i < mFinishCells.length; ++i) {
+            int index = mFinishCells[i];
+            int state = position.getCell(index);
+            if (state >= Game.CELL_STATE_MIN && state != mFinishState)
+                mCandidates[count++] = index;
+
+            int row = index / mColumns;
+            int column = index - (row * mColumns);
+            if (row > 0 && reachesOut(position, index - mColumns))
+                mCandidates[count++] = index - mColumns;
+            if (row < mRows - 1 && reachesOut(position, index + mColumns))
+                mCandidates[count++] = index + mColumns;
+            if (column > 0 && reachesOut(position, index - 1))
+                mCandidates[count++] = index - 1;
+            if (column < mColumns - 1 && reachesOut(position, index + 1))
+                mCandidates[count++] = index + 1;
+        }
+        return count;
+    }
+
+    /* Tests if a neighbor of a finish cell is a finish type cell outside them */
+    private boolean reachesOut(Position position, int neighbor) {
+        return !mFinish[neighbor] && position.getCell(neighbor) == mFinishState;
+    }
+
+    private Verdict analyzeFrozenPieces(Position position, int candidates) {
+
+        findFrozenPieces(position, candidates);
+
+        for (int piece = 0; piece < mPieceCount; ++piece) {
+            if (!mFrozen[piece])
+                continue;
+
+            int state = position.getCell(mPieceCells[mPieceStart[piece]]);
+            boolean inside = false;
+            boolean touching = false;
+            boolean outside = false;
+
+            for (int i = mPieceStart[piece]; i < mPieceStart[piece + 1]; ++i) {
+                int index = mPieceCells[i];
+                if (mFinish[index]) {
+                    inside = true;
+                } else {
+                    outside = true;
+                    touching |= touchesFinish(index);
+                }
+            }
+
+            if (state != mFinishState && inside)
+                return Verdict.FINISH_CELL_BLOCKED;
+            if (state == mFinishState && outside && (inside || touching))
+                return Verdict.FINISH_TYPE_STUCK;
+        }
+        return Verdict.OPEN;
+    }
+
+    /*
+     * Finds frozen pieces among the candidates and the pieces around them.
+     * Pieces are labeled outwards from the candidates, through the neighbors
+     * of pieces that are blocked on all sides by the edge or other pieces, up
+     * to MAX_PIECES pieces; pieces not reached count as free to move. Then
+     * pieces are repeatedly dropped from the frozen set until every piece
+     * left is blocked in every direction by the edge or a frozen piece. Any
+     * such set is frozen for good, so leaving pieces out only makes the
+     * analysis find fewer lost states, never wrong ones.
+     */
+    private void findFrozenPieces(Position position, int candidates) {
+
+        if (++mGeneration == 0) {
+            Arrays.fill(mLabelGeneration, 0);
+            mGeneration = 1;
+        }
+        mPieceCount = 0;
+        mPieceStart[0] = 0;
+
+        for (int i = 0; i < candidates; ++i)
+            labelPiece(position, mCandidates[i]);
+
+        for (int piece = 0; piece < mPieceCount; ++piece) {
+            mFrozen[piece] = isBlocked(position, piece, false);
+            if (!mFrozen[piece])
+                continue;
+
+            for (int i = mPieceStart[piece]; i < mPieceStart[piece + 1]; ++i) {
+                int index = mPieceCells[i];
+                int row = index / mColumns;
+                int column = index - (row * mColumns);
+                if (row > 0)
+                    labelPiece(position, index - mColumns);
+                if (row < mRows - 1)
+                    labelPiece(position, index + mColumns);
+                if (column > 0)
+                    labelPiece(position, index - 1);
+                if (column < mColumns - 1)
+                    labelPiece(position, index + 1);
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int piece = 0; piece < mPieceCount; ++piece) {
+                if (mFrozen[piece] && !isBlocked(position, piece, true)) {
+                    mFrozen[piece] = false;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /*
+     * Tests if a piece is held in all 4 directions by the edge or other
+     * pieces, or if frozenOnly is set, by the edge or frozen pieces
+     */
+    private boolean isBlocked(Position position, int piece, boolean frozenOnly) {
+        boolean up = false;
+        boolean down = false;
+        boolean left = false;
+        boolean right = false;
+
+        for (int i = mPieceStart[piece]; i < mPieceStart[piece + 1]; ++i) {
+            int index = mPieceCells[i];
+            int row = index / mColumns;
+            int column = index - (row * mColumns);
+
+            up |= row == 0 || holds(position, index - mColumns, piece, frozenOnly);
+            down |= row == mRows - 1 || holds(position, index + mColumns, piece, frozenOnly);
+            left |= column == 0 || holds(position, index - 1, piece, frozenOnly);
+            right |= column == mColumns - 1 || holds(position, index + 1, piece, frozenOnly);
+        }
+        return up && down && left && right;
+    }
+
+    /* Tests if a cell holds a piece, or a frozen piece, other than the given one */
+    private boolean holds(Position position, int index, int piece, boolean frozenOnly) {
+        if (mLabelGeneration[index] != mGeneration)
+            return !frozenOnly && position.getCell(index) >= Game.CELL_STATE_MIN;
+        int other = mLabels[index];
+        return other != piece && (!frozenOnly || mFrozen[other]);
+    }
+
+    private boolean touchesFinish(int index) {
+        int row = index / mColumns;
+        int column = index - (row * mColumns);
+        return (row > 0 && mFinish[index - mColumns])
+                || (row < mRows - 1 && mFinish[index + mColumns])
+                || (column > 0 && mFinish[index - 1])
+                || (column < mColumns - 1 && mFinish[index + 1]);
+    }
+
+    /* Labels the piece at a cell, unless the cell is empty or already labeled */
+    private void labelPiece(Position position, int start) {
+
+        int state = position.getCell(start);
+        if (state < Game.CELL_STATE_MIN || mLabelGeneration[start] == mGeneration
+                || mPieceCount == MAX_PIECES)
+            return;
+
+        int piece = mPieceCount++;
+        int cellCount = mPieceStart[piece];
+        int top = 0;
+        label(start, piece);
+        mStack[top++] = start;
+
+        while (top > 0) {
+            int index = mStack[--top];
+            int row = index / mColumns;
+            int column = index - (row * mColumns);
+            mPieceCells[cellCount++] = index;
+
+            if (row > 0)
+                top = push(position, index - mColumns, state, piece, top);
+            if (row < mRows - 1)
+                top = push(position, index + mColumns, state, piece, top);
+            if (column > 0)
+                top = push(position, index - 1, state, piece, top);
+            if (column < mColumns - 1)
+                top = push(position, index + 1, state, piece, top);
+        }
+        mPieceStart[piece + 1] = cellCount;
+    }
+
+    private void label(int index, int piece) {
+        mLabels[index] = piece;
+        mLabelGeneration[index] = mGeneration;
+    }
+
+    private int push(Position position, int index, int state, int piece, int top) {
+        if (mLabelGeneration[index] != mGeneration && position.getCell(index) == state) {
+            label(index, piece);
+            mStack[top++] = index;
+        }
+        return top;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The exact number of moves left to finish a level from each of its states,
+ * computed ahead of time and looked up by the state hash, the value
+ * Game.getStateHash returns.
+ *
+ * Only states the level can still be finished from are kept, so for a table
+ * covering every state reachable from the start, a reachable state missing
+ * from the table is lost. The table is written as a header, the sorted state
+ * hashes, then one distance byte per hash.
+ *
+ * @author Tom
+ */
+public final class DistanceTable {
+
+    /** The distance of states missing from the table */
+    public static final int UNKNOWN = -1;
+
+    /* the first 4 bytes of a table, "BDT1" */
+    private static final int MAGIC = 0x42445431;
+
+    private final String mID;
+    private final long[] mHashes;
+    private final byte[] mDistances;
+
+    /**
+     * Creates a table
+     *
+     * @param id the level id
+     * @param hashes the state hashes, in increasing order with no repeats
+     * @param distances the distance of each state, 1 to 255
+     */
+    public DistanceTable(String id, long[] hashes, int[] distances) {
+
+        if (hashes.length != distances.length)
+            throw new IllegalArgumentException("a distance is needed for every hash");
+
+        mID = id;
+        mHashes = hashes.clone();
+        mDistances = new byte[distances.length];
+        for (int i = 0; i < hashes.length; ++i) {
+            if (i > 0 && hashes[i] <= hashes[i - 1])
+                throw new IllegalArgumentException("hashes not in increasing order");
+            if (distances[i] < 1 || distances[i] > 255)
+                throw new IllegalArgumentException("distance out of range: " + distances[i]);
+            mDistances[i] = (byte) distances[i];
+        }
+    }
+
+    private DistanceTable(String id, long[] hashes, byte[] distances) {
+        mID = id;
+        mHashes = hashes;
+        mDistances = distances;
+    }
+
+    /**
+     * Reads a table written by write
+     *
+     * @param in the stream, not closed
+     * @return the table
+     * @throws IOException if the stream could not be read or is not a table
+     */
+    public static DistanceTable load(InputStream in) throws IOException {
+
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC)
+            throw new IOException("not a distance table");
+
+        String id = data.readUTF();
+        int count = data.readInt();
+        if (count < 0)
+            throw new IOException("bad distance table size");
+
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; ++i)
+            hashes[i] = data.readLong();
+        byte[] distances = new byte[count];
+        data.readFully(distances);
+
+        return new DistanceTable(id.length() == 0 ? null : id, hashes, distances);
+    }
+
+    /**
+     * Writes the table
+     *
+     * @param out the stream, flushed but not closed
+     * @throws IOException if the stream could not be written
+     */
+    public void write(OutputStream out) throws IOException {
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeUTF(mID == null ? "" : mID);
+        data.writeInt(mHashes.length);
+        for (int i = 0; i < mHashes.length; ++i)
+            data.writeLong(mHashes[i]);
+        data.write(mDistances);
+        data.flush();
+    }
+
+    /** Returns the level id, may be null */
+    public String getID() {
+        return mID;
+    }
+
+    /** Returns the number of states in the table */
+    public int size() {
+        return mHashes.length;
+    }
+
+    /**
+     * Returns the number of moves of a shortest way to finish from a state
+     *
+     * @param hash the state hash
+     * @return the distance, or UNKNOWN if the state is not in the table
+     */
+    public int getDistance(long hash) {
+        int i = Arrays.binarySearch(mHashes, hash);
+        return i < 0 ? UNKNOWN : mDistances[i] & 0xff;
+    }
+
+    /**
+     * Finds the next move of a shortest way to finish, a move that forms the
+     * finish piece or leads to a state one move closer
+     *
+     * @param position the state, in the table; left unchanged
+     * @param next work position of the same level
+     * @param moves work array, as long as the board
+     * @return the cell to tap, or -1 if the state is not in the table
+     */
+    public int findMove(Position position, Position next, int[] moves) {
+
+        int distance = getDistance(position.getHash());
+        if (distance == UNKNOWN)
+            return -1;
+
+        int count = position.findMoves(moves);
+        for (int i = 0; i < count; ++i) {
+            next.copyFrom(position);
+            next.move(moves[i]);
+            if (next.isFinished() || getDistance(next.getHash()) == distance - 1)
+                return moves[i];
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+import com.jdt.blocks.Game;
+
+import java.util.Arrays;
+
+/**
+ * A lower bound on the number of moves left to form the finish piece.
+ *
+ * Pieces only ever grow, by merging, and move as a whole in straight lines.
+ * So the finish piece is the union of some of the pieces of the finish type
+ * on the board now, each translated to a place that lies entirely inside the
+ * finish cells. A piece that needs to move along one axis to get there takes
+ * at least one move, along both axes at least two. Every finish cell must be
+ * covered that way, and a finish cell held by a piece of another type, or by
+ * a piece of the finish type that fits nowhere in the finish, must also be
+ * vacated first, by a move of a different piece. The bound is the
+ * largest cost over the finish cells, and at least one since the finish is
+ * only tested after a move.
+ *
+ * If some finish cell cannot be covered by any piece the level can no longer
+ * be finished, and UNSOLVABLE is returned.
+ *
+ * @author Tom
+ */
+public final class FinishHeuristic {
+
+    /** Returned when the finish piece can never be formed */
+    public static final int UNSOLVABLE = Integer.MAX_VALUE;
+
+    private final int mRows;
+    private final int mColumns;
+    private final int mFinishState;
+    private final int[] mFinishCells;
+    /* position of each board cell in the finish cells, or -1 */
+    private final int[] mFinishIndex;
+
+    /* work arrays */
+    private final int[] mCover;
+    private final int[] mMarks;
+    /* cells of finish type pieces that cannot be part of the finish piece */
+    private final int[] mMisfits;
+    private int mGeneration;
+    private final int[] mStack;
+    private final int[] mPiece;
+
+    /**
+     * Creates the heuristic for a level
+     *
+     * @param level the level
+     */
+    public FinishHeuristic(Level level) {
+
+        mRows = level.getRows();
+        mColumns = level.getColumns();
+        mFinishState = level.getFinishState();
+
+        int size = level.getCellCount();
+        mFinishCells = new int[level.getFinishCellCount()];
+        mFinishIndex = new int[size];
+        Arrays.fill(mFinishIndex, -1);
+        for (int i = 0; i < mFinishCells.length; ++i) {
+            mFinishCells[i] = level.getFinishCell(i);
+            mFinishIndex[mFinishCells[i]] = i;
+        }
+
+        mCover = new int[mFinishCells.length];
+        mMarks = new int[size];
+        mMisfits = new int[size];
+        mStack = new int[size];
+        mPiece = new int[size];
+    }
+
+    /**
+     * Estimates the moves left from a position that is not finished
+     *
+     * @param position the position
+     * @return a lower bound on the moves left, or UNSOLVABLE
+     */
+    public int estimate(Position position) {
+
+        if (++mGeneration == 0) {
+            Arrays.fill(mMarks, 0);
+            Arrays.fill(mMisfits, 0);
+            mGeneration = 1;
+        }
+        Arrays.fill(mCover, UNSOLVABLE);
+
+        int size = position.getCellCount();
+        for (int index = 0; index < size; ++index) {
+            if (position.getCell(index) == mFinishState && mMarks[index] != mGeneration)
+                coverWithPiece(position, collectPiece(position, index));
+        }
+
+        int bound = 1;
+        for (int i = 0; i < mFinishCells.length; ++i) {
+            int cost = mCover[i];
+            if (cost == UNSOLVABLE)
+                return UNSOLVABLE;
+
+            int cell = mFinishCells[i];
+            int state = position.getCell(cell);
+            if (state >= Game.CELL_STATE_MIN
+                    && (state != mFinishState || mMisfits[cell] == mGeneration))
+                ++cost;
+
+            bound = Math.max(bound, cost);
+        }
+        return bound;
+    }
+
+    /*
+     * Tries every translation of the collected piece that puts its first cell
+     * on a finish cell, and records the cost of each one that fits on the
+     * finish cells it covers. Marks the piece as a misfit if none fits.
+     */
+    private void coverWithPiece(Position position, int pieceSize) {
+
+        boolean fitted = false;
+
+        int anchor = mPiece[0];
+        int anchorRow = anchor / mColumns;
+        int anchorColumn = anchor % mColumns;
+
+        for (int f = 0; f < mFinishCells.length && pieceSize <= mFinishCells.length; ++f) {
+            int rowShift = mFinishCells[f] / mColumns - anchorRow;
+            int columnShift = mFinishCells[f] % mColumns - anchorColumn;
+
+            if (!fits(pieceSize, rowShift, columnShift))
+                continue;
+
+            fitted = true;
+            int cost = (rowShift != 0 ? 1 : 0) + (columnShift != 0 ? 1 : 0);
+            for (int i = 0; i < pieceSize; ++i) {
+                int target = mFinishIndex[mPiece[i] + rowShift * mColumns + columnShift];
+                mCover[target] = Math.min(mCover[target], cost);
+            }
+        }
+
+        if (!fitted) {
+            for (int i = 0; i < pieceSize; ++i)
+                mMisfits[mPiece[i]] = mGeneration;
+        }
+    }
+
+    private boolean fits(int pieceSize, int rowShift, int columnShift) {
+        for (int i = 0; i < pieceSize; ++i) {
+            int row = mPiece[i] / mColumns + rowShift;
+            int column = mPiece[i] % mColumns + columnShift;
+            if (row < 0 || row >= mRows || column < 0 || column >= mColumns)
+                return false;
+            if (mFinishIndex[row * mColumns + column] < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /* Collects the cells of the piece at a cell, returning the cell count */
+    private int collectPiece(Position position, int start) {
+        int state = position.getCell(start);
+        int top = 0;
+        int count = 0;
+
+        mMarks[start] = mGeneration;
+        mStack[top++] = start;
+
+        while (top > 0) {
+            int index = mStack[--top];
+            int row = index / mColumns;
+            int column = index - (row * mColumns);
+
+            mPiece[count++] = index;
+
+            if (row > 0)
+                top = push(position, index - mColumns, state, top);
+            if (row < mRows - 1)
+                top = push(position, index + mColumns, state, top);
+            if (column > 0)
+                top = push(position, index - 1, state, top);
+            if (column < mColumns - 1)
+                top = push(position, index + 1, state, top);
+        }
+        return count;
+    }
+
+    private int push(Position position, int index, int state, int top) {
+        if (position.getCell(index) == state && mMarks[index] != mGeneration) {
+            mMarks[index] = mGeneration;
+            mStack[top++] = index;
+        }
+        return top;
+    }
+}
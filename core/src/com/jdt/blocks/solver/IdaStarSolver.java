@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+/**
+ * Iterative deepening search with the FinishHeuristic bound. Each iteration
+ * is a depth-first search that abandons any path whose length plus bound
+ * exceeds a limit, starting at the bound of the start state and raised to the
+ * smallest length that was cut off. Only the current path is kept, so memory
+ * stays flat however many states are searched, at the cost of visiting states
+ * again on later iterations and along different paths. A path never returns
+ * to a state already on it. States that a DeadStateAnalyzer finds lost are
+ * not searched.
+ *
+ * @author Tom
+ */
+public class IdaStarSolver implements Solver {
+
+    /* how often, in visited states, the heap use is sampled */
+    private static final int MEMORY_SAMPLE_INTERVAL = 4096;
+
+    private int mMaxDepth = 256;
+    private long mMaxVisited = Long.MAX_VALUE;
+    private boolean mPruneDeadStates = true;
+
+    private FinishHeuristic mHeuristic;
+    private DeadStateAnalyzer mAnalyzer;
+    private SolverStats mStats;
+    /* the current path, one position and move list per depth */
+    private Position[] mPath;
+    private int[][] mMoves;
+    private int[] mPathMoves;
+    /* smallest estimated length cut off in the current iteration */
+    private int mNextLimit;
+    private int mSolutionLength;
+
+    /**
+     * Limits the length of the solutions searched for
+     *
+     * @param maxDepth the longest solution, in moves
+     */
+    public void setMaxDepth(int maxDepth) {
+        mMaxDepth = maxDepth;
+    }
+
+    /**
+     * Limits the number of states visited, the search gives up unsolved when
+     * the limit is reached
+     *
+     * @param maxVisited the visited state limit
+     */
+    public void setMaxVisited(long maxVisited) {
+        mMaxVisited = maxVisited;
+    }
+
+    /**
+     * Sets whether states found lost by a DeadStateAnalyzer are dropped
+     * instead of searched, on by default
+     *
+     * @param pruneDeadStates true to prune lost states
+     */
+    public void setPruneDeadStates(boolean pruneDeadStates) {
+        mPruneDeadStates = pruneDeadStates;
+    }
+
+    public Solution solve(Level level) {
+
+        mStats = new SolverStats();
+        mStats.start();
+
+        mHeuristic = new FinishHeuristic(level);
+        mAnalyzer = mPruneDeadStates ? new DeadStateAnalyzer(level) : null;
+        mPath = new Position[mMaxDepth + 1];
+        mMoves = new int[mMaxDepth][];
+        mPathMoves = new int[mMaxDepth];
+        mPath[0] = level.newPosition();
+
+        try {
+            int limit = mHeuristic.estimate(mPath[0]);
+            mSolutionLength = -1;
+
+            while (limit <= mMaxDepth) {
+                mNextLimit = FinishHeuristic.UNSOLVABLE;
+                if (search(0, limit) || mSolutionLength >= 0)
+                    break;
+                if (mStats.getStatesVisited() >= mMaxVisited
+                        || Thread.currentThread().isInterrupted())
+                    break;
+                limit = mNextLimit;
+            }
+
+            mStats.stop();
+            if (mSolutionLength < 0)
+                return new Solution(level, null, mStats);
+
+            int[] moves = new int[mSolutionLength];
+            System.arraycopy(mPathMoves, 0, moves, 0, mSolutionLength);
+            return new Solution(level, moves, mStats);
+
+        } finally {
+            mHeuristic = null;
+            mAnalyzer = null;
+            mPath = null;
+            mMoves = null;
+        }
+    }
+
+    /*
+     * Searches below the position at a depth, returning true when a solution
+     * has been found or the search must stop
+     */
+    private boolean search(int depth, int limit) {
+
+        Position position = mPath[depth];
+        mStats.addVisited();
+        if (mStats.getStatesVisited() >= mMaxVisited)
+            return true;
+        if (Thread.currentThread().isInterrupted())
+            return true;
+        if (mStats.getStatesVisited() % MEMORY_SAMPLE_INTERVAL == 0)
+            mStats.sampleMemory();
+
+        if (mMoves[depth] == null) {
+            mMoves[depth] = new int[position.getCellCount()];
+            mPath[depth + 1] = position.getLevel().newPosition();
+        }
+        int[] moves = mMoves[depth];
+        Position next = mPath[depth + 1];
+
+        int count = position.findMoves(moves);
+        mStats.addGenerated(count);
+
+        for (int i = 0; i < count; ++i) {
+            next.copyFrom(position);
+            next.move(moves[i]);
+            mPathMoves[depth] = moves[i];
+
+            if (next.isFinished()) {
+                mSolutionLength = depth + 1;
+                return true;
+            }
+            if (isOnPath(next, depth))
+                continue;
+
+            int bound = mHeuristic.estimate(next);
+            if (bound == FinishHeuristic.UNSOLVABLE)
+                continue;
+
+            int estimate = depth + 1 + bound;
+            if (depth + 1 >= mMaxDepth)
+                continue;
+            if (estimate <= limit && mAnalyzer != null && mAnalyzer.canPrune(next)) {
+                mStats.addPruned();
+                continue;
+            }
+            if (estimate > limit) {
+                mNextLimit = Math.min(mNextLimit, estimate);
+                continue;
+            }
+
+            if (search(depth + 1, limit))
+                return true;
+        }
+        return false;
+    }
+
+    /* Tests if a position repeats one on the path, up to a depth */
+    private boolean isOnPath(Position position, int depth) {
+        long hash = position.getHash();
+        for (int d = depth; d >= 0; --d) {
+            Position other = mPath[d];
+            if (other.getHash() == hash && other.sameCells(position))
+                return true;
+        }
+        return false;
+    }
+}
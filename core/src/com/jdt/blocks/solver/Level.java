@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.solver;
+
+import com.jdt.blocks.Game;
+import com.jdt.blocks.GameParser;
+import com.jdt.blocks.Piece;
+
+import java.util.Arrays;
+
+/**
+ * A game level as seen by the solvers: the board size, the starting cell
+ * states and the finish piece. Cells are numbered row by row, index = row *
+ * columns + column.
+ *
+ * @author Tom
+ */
+public final class Level {
+
+    /** The largest piece type of a level, Position.encode keeps a cell in a byte */
+    public static final int MAX_PIECE_TYPE = Byte.MAX_VALUE;
+
+    private final String mID;
+    private final int mRows;
+    private final int mColumns;
+    private final int[] mCells;
+    private final int mFinishState;
+    private final int[] mFinishCells;
+
+    /**
+     * Creates a level
+     *
+     * @param id the level id, may be null
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param cells the starting cell states, row by row; copied
+     * @param finishPiece the finish piece
+     */
+    public Level(String id, int rows, int columns, int[] cells, Piece finishPiece) {
+        this(id, rows, columns, cells, finishState(finishPiece),
+                finishCells(finishPiece, columns));
+    }
+
+    /**
+     * Creates a level
+     *
+     * @param id the level id, may be null
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param cells the starting cell states, row by row; copied
+     * @param finishState the piece type of the finish piece
+     * @param finishCells the cell indices of the finish piece; copied
+     */
+    public Level(String id, int rows, int columns, int[] cells, int finishState,
+            int[] finishCells) {
+
+        if (rows <= 0 || columns <= 0 || cells.length != rows * columns)
+            throw new IllegalArgumentException("illegal board size");
+        if (finishState < Game.CELL_STATE_MIN || finishCells.length == 0)
+            throw new IllegalArgumentException("no finish piece");
+        checkCells(cells);
+
+        mID = id;
+        mRows = rows;
+        mColumns = columns;
+        mCells = cells.clone();
+        mFinishState = finishState;
+        mFinishCells = finishCells.clone();
+        Arrays.sort(mFinishCells);
+
+        for (int i = 0; i < mFinishCells.length; ++i) {
+            if (mFinishCells[i] < 0 || mFinishCells[i] >= cells.length)
+                throw new IllegalArgumentException("finish piece outside the board");
+        }
+    }
+
+    /* Rejects cell states the solvers can not store */
+    private static void checkCells(int[] cells) {
+        for (int i = 0; i < cells.length; ++i) {
+            if (cells[i] < Game.CELL_EMPTY || cells[i] > MAX_PIECE_TYPE)
+                throw new IllegalArgumentException("piece type " + cells[i]
+                        + " out of range, the solvers allow types up to " + MAX_PIECE_TYPE);
+        }
+    }
+
+    private static int finishState(Piece finishPiece) {
+        if (finishPiece == null)
+            throw new IllegalArgumentException("no finish piece");
+        return finishPiece.mState;
+    }
+
+    private static int[] finishCells(Piece finishPiece, int columns) {
+        int[] cells = new int[finishPiece.getCellCount()];
+        for (int i = 0; i < cells.length; ++i)
+            cells[i] = finishPiece.getCellRow(i) * columns + finishPiece.getCellColumn(i);
+        return cells;
+    }
+
+    /**
+     * Creates a level from its parsed definition
+     *
+     * @param parser a valid game parser
+     * @return the level, at its starting state
+     */
+    public static Level fromParser(GameParser parser) {
+
+        if (parser == null || !parser.valid())
+            throw new IllegalArgumentException("illegal game definition");
+
+        int rows = parser.getRows();
+        int columns = parser.getColumns();
+        int[][] state = parser.getState();
+        int[] cells = new int[rows * columns];
+        for (int row = 0; row < rows; ++row)
+            System.arraycopy(state[row], 0, cells, row * columns, columns);
+
+        return new Level(parser.getID(), rows, columns, cells, parser.getFinishPiece());
+    }
+
+    /**
+     * Creates a level from the current state of a game
+     *
+     * @param game the game
+     * @return the level, starting at the current board of the game
+     */
+    public static Level fromGame(Game game) {
+
+        int[] cells = new int[game.getRows() * game.getColumns()];
+        game.getCellStates(cells);
+
+        return new Level(game.getID(), game.getRows(), game.getColumns(), cells,
+                game.getFinishPiece());
+    }
+
+    /**
+     * Returns a copy of this level with a different starting board
+     *
+     * @param cells the starting cell states, row by row; copied
+     * @return the new level
+     */
+    public Level withCells(int[] cells) {
+        return new Level(this, cells);
+    }
+
+    private Level(Level level, int[] cells) {
+
+        if (cells.length != level.mCells.length)
+            throw new IllegalArgumentException("illegal board size");
+        checkCells(cells);
+
+        mID = level.mID;
+        mRows = level.mRows;
+        mColumns = level.mColumns;
+        mCells = cells.clone();
+        mFinishState = level.mFinishState;
+        mFinishCells = level.mFinishCells;
+    }
+
+    /** Returns the level id, may be null */
+    public String getID() {
+        return mID;
+    }
+
+    /** Returns the number of rows on the board */
+    public int getRows() {
+        return mRows;
+    }
+
+    /** Returns the number of columns on the board */
+    public int getColumns() {
+        return mColumns;
+    }
+
+    /** Returns the number of cells on the board */
+    public int getCellCount() {
+        return mCells.length;
+    }
+
+    /** Returns the starting state of a cell */
+    public int getCell(int index) {
+        return mCells[index];
+    }
+
+    /** Returns the piece type of the finish piece */
+    public int getFinishState() {
+        return mFinishState;
+    }
+
+    /** Returns the number of cells in the finish piece */
+    public int getFinishCellCount() {
+        return mFinishCells.length;
+    }
+
+    /** Returns a cell index of the finish piece, in increasing order */
+    public int getFinishCell(int i) {
+        return mFinishCells[i];
+    }
+
+    /** Returns a new position at the start of this level */
+    public Position newPosition() {
+        return new Position(this);
+    }
+}
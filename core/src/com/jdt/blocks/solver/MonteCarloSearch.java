@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.solver;
+
+import com.jdt.blocks.Game;
+
+import java.util.Random;
+
+/**
+ * Picks a good next move by Monte Carlo tree search, for boards too big to
+ * search exactly. The result is not guaranteed to be on a shortest solution.
+ *
+ * Within a time budget the search repeatedly walks down a tree of moves from
+ * the board, choosing children by the UCT rule, adds the children of the leaf
+ * it reaches, and plays a rollout from there: a bounded number of moves, some
+ * picked at random and some picked greedily by the FinishHeuristic. A rollout
+ * that forms the finish piece scores more the sooner it does; one that does
+ * not scores by the heuristic bound of where it ended. The most visited move
+ * at the root is the answer.
+ *
+ * Rollouts run on reused positions and the tree lives in preallocated arrays,
+ * so the search allocates nothing after it is created. Random moves are found
+ * by tapping random cells until a piece moves, rather than listing every move,
+ * so a random rollout step on a big board costs about the size of a piece,
+ * not of the board.
+ *
+ * @author Tom
+ */
+public final class MonteCarloSearch {
+
+    /* random cells tried before every move is listed */
+    private static final int RANDOM_TAPS = 16;
+    /* moves compared for a greedy rollout step */
+    private static final int GREEDY_CANDIDATES = 3;
+    /* the most moves of a rollout, unless set */
+    private static final int ROLLOUT_DEPTH = 32;
+    /* marks a tree node whose children have not been added */
+    private static final int NOT_EXPANDED = -1;
+
+    private final FinishHeuristic mHeuristic;
+    private final Random mRandom;
+
+    private long mTimeBudgetNanos = 50 * 1000000L;
+    private int mRolloutDepth = ROLLOUT_DEPTH;
+    private double mExploration = 1.4;
+    private double mGreedyFraction = 0.5;
+
+    /* the tree, one entry per node; the root is node 0 */
+    private final int[] mMove;
+    private final int[] mFirstChild;
+    private final int[] mChildCount;
+    private final int[] mVisits;
+    private final double[] mReward;
+    private final boolean[] mFinishes;
+    private int mNodeCount;
+
+    /* reused positions and work arrays */
+    private final Position mRoot;
+    private final Position mPosition;
+    private final Position mCandidate;
+    private final Position mBest;
+    private final int[] mMoves;
+    private final int[] mPath;
+
+    /* metrics of the last search */
+    private long mRollouts;
+    private long mElapsedNanos;
+
+    /**
+     * Creates a search for the boards of a level
+     *
+     * @param level the level
+     * @param maxNodes the most tree nodes kept, at least one more than the
+     *            board cells
+     * @param seed seeds the random choices
+     */
+    public MonteCarloSearch(Level level, int maxNodes, long seed) {
+
+        if (maxNodes <= level.getCellCount())
+            throw new IllegalArgumentException("too few tree nodes");
+
+        mHeuristic = new FinishHeuristic(level);
+        mRandom = new Random(seed);
+
+        mMove = new int[maxNodes];
+        mFirstChild = new int[maxNodes];
+        mChildCount = new int[maxNodes];
+        mVisits = new int[maxNodes];
+        mReward = new double[maxNodes];
+        mFinishes = new boolean[maxNodes];
+
+        mRoot = level.newPosition();
+        mPosition = level.newPosition();
+        mCandidate = level.newPosition();
+        mBest = level.newPosition();
+        mMoves = new int[level.getCellCount()];
+        mPath = new int[maxNodes];
+    }
+
+    /**
+     * Sets how long a search runs
+     *
+     * @param millis the time budget, 50 ms by default
+     */
+    public void setTimeBudget(long millis) {
+        mTimeBudgetNanos = millis * 1000000L;
+    }
+
+    /**
+     * Sets the most moves played by one rollout
+     *
+     * @param depth the rollout depth, 32 by default
+     */
+    public void setRolloutDepth(int depth) {
+        mRolloutDepth = depth;
+    }
+
+    /**
+     * Sets the UCT exploration constant
+     *
+     * @param exploration the constant, 1.4 by default
+     */
+    public void setExploration(double exploration) {
+        mExploration = exploration;
+    }
+
+    /**
+     * Sets the share of rollout moves picked greedily by the heuristic, the
+     * rest are picked at random
+     *
+     * @param fraction from 0 to 1, 0.5 by default
+     */
+    public void setGreedyFraction(double fraction) {
+        mGreedyFraction = fraction;
+    }
+
+    /**
+     * Searches for a good next move
+     *
+     * @param cells the board, row by row
+     * @return the cell to tap, or -1 if no piece can move
+     */
+    public int findMove(int[] cells) {
+        mRoot.setCells(cells);
+        return findMove();
+    }
+
+    /**
+     * Searches for a good next move
+     *
+     * @param position the board, left unchanged
+     * @return the cell to tap, or -1 if no piece can move
+     */
+    public int findMove(Position position) {
+        mRoot.copyFrom(position);
+        return findMove();
+    }
+
+    /** Returns the number of rollouts played by the last search */
+    public long getRollouts() {
+        return mRollouts;
+    }
+
+    /** Returns the rollouts played per second by the last search */
+    public double getRolloutsPerSecond() {
+        return mElapsedNanos == 0 ? 0 : mRollouts * 1e9 / mElapsedNanos;
+    }
+
+    /** Returns the number of tree nodes made by the last search */
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    /** Returns the duration of the last search */
+    public long getElapsedNanos() {
+        return mElapsedNanos;
+    }
+
+    private int findMove() {
+
+        long start = System.nanoTime();
+        mRollouts = 0;
+        mNodeCount = 1;
+        resetNode(0, -1);
+
+        expand(0, mRoot);
+        if (mChildCount[0] == 0) {
+            mElapsedNanos = System.nanoTime() - start;
+            return -1;
+        }
+
+        /* a move that finishes at once needs no search */
+        for (int i = 0; i < mChildCount[0]; ++i) {
+            if (mFinishes[mFirstChild[0] + i]) {
+                mElapsedNanos = System.nanoTime() - start;
+                return mMove[mFirstChild[0] + i];
+            }
+        }
+
+        do {
+            iterate();
+            ++mRollouts;
+        } while (System.nanoTime() - start < mTimeBudgetNanos
+                && !Thread.currentThread().isInterrupted());
+
+        int best = mFirstChild[0];
+        for (int i = 1; i < mChildCount[0]; ++i) {
+            int child = mFirstChild[0] + i;
+            if (mVisits[child] > mVisits[best])
+                best = child;
+        }
+        mElapsedNanos = System.nanoTime() - start;
+        return mMove[best];
+    }
+
+    /* One pass: select a leaf, expand it, roll out from it, back up the reward */
+    private void iterate() {
+
+        int node = 0;
+        int depth = 0;
+        mPath[depth++] = node;
+        mPosition.copyFrom(mRoot);
+
+        while (mChildCount[node] > 0) {
+            node = select(node);
+            mPosition.move(mMove[node]);
+            mPath[depth++] = node;
+            if (mFinishes[node])
+                break;
+        }
+
+        double reward;
+        if (mFinishes[node]) {
+            reward = finishReward(depth - 1);
+        } else {
+            if (mChildCount[node] == NOT_EXPANDED && mVisits[node] > 0) {
+                expand(node, mPosition);
+                if (mChildCount[node] > 0) {
+                    node = mFirstChild[node] + mRandom.nextInt(mChildCount[node]);
+                    mPosition.move(mMove[node]);
+                    mPath[depth++] = node;
+                }
+            }
+            reward = mFinishes[node] ? finishReward(depth - 1) : rollout(depth - 1);
+        }
+
+        for (int i = 0; i < depth; ++i) {
+            ++mVisits[mPath[i]];
+            mReward[mPath[i]] += reward;
+        }
+    }
+
+    /* Picks the child with the highest UCT score, unvisited children first */
+    private int select(int node) {
+        double logVisits = Math.log(mVisits[node] + 1);
+        int best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < mChildCount[node]; ++i) {
+            int child = mFirstChild[node] + i;
+            if (mVisits[child] == 0)
+                return child;
+            double score = mReward[child] / mVisits[child] + mExploration
+                    * Math.sqrt(logVisits / mVisits[child]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /* Adds the children of a node, unless the tree is full */
+    private void expand(int node, Position position) {
+        int count = position.findMoves(mMoves);
+        if (mNodeCount + count > mMove.length)
+            return;
+
+        mFirstChild[node] = mNodeCount;
+        mChildCount[node] = count;
+        for (int i = 0; i < count; ++i) {
+            int child = mNodeCount++;
+            resetNode(child, mMoves[i]);
+            mCandidate.copyFrom(position);
+            mCandidate.move(mMoves[i]);
+            mFinishes[child] = mCandidate.isFinished();
+        }
+    }
+
+    private void resetNode(int node, int move) {
+        mMove[node] = move;
+        mFirstChild[node] = 0;
+        mChildCount[node] = NOT_EXPANDED;
+        mVisits[node] = 0;
+        mReward[node] = 0;
+        mFinishes[node] = false;
+    }
+
+    /*
+     * Plays moves from mPosition until the finish piece forms, no piece can
+     * move or the depth runs out, and scores the result
+     */
+    private double rollout(int depth) {
+        for (int step = 0; step < mRolloutDepth; ++step) {
+            boolean moved = mRandom.nextDouble() < mGreedyFraction ? greedyMove()
+                    : randomMove();
+            if (!moved)
+                break;
+            if (mPosition.isFinished())
+                return finishReward(depth + step + 1);
+        }
+
+        int bound = mHeuristic.estimate(mPosition);
+        if (bound == FinishHeuristic.UNSOLVABLE)
+            return 0;
+        return 0.5 / (1 + bound);
+    }
+
+    /* A finish scores from 1 down to 0.5, the longer the path the lower */
+    private double finishReward(int length) {
+        return 0.5 + 0.5 / (1 + 0.1 * length);
+    }
+
+    /* Makes a random move, returning false if no piece can move */
+    private boolean randomMove() {
+        int size = mPosition.getCellCount();
+        for (int i = 0; i < RANDOM_TAPS; ++i) {
+            if (mPosition.move(mRandom.nextInt(size)))
+                return true;
+        }
+
+        int count = mPosition.findMoves(mMoves);
+        if (count == 0)
+            return false;
+        mPosition.move(mMoves[mRandom.nextInt(count)]);
+        return true;
+    }
+
+    /*
+     * Makes the move with the lowest heuristic bound among a few random
+     * moves, returning false if no piece can move
+     */
+    private boolean greedyMove() {
+        int size = mPosition.getCellCount();
+        int bestBound = -1;
+
+        for (int i = 0, found = 0; i < RANDOM_TAPS && found < GREEDY_CANDIDATES; ++i) {
+            int index = mRandom.nextInt(size);
+            if (mPosition.getCell(index) < Game.CELL_STATE_MIN)
+                continue;
+
+            mCandidate.copyFrom(mPosition);
+            if (!mCandidate.move(index))
+                continue;
+            ++found;
+
+            int bound = mCandidate.isFinished() ? 0 : mHeuristic.estimate(mCandidate);
+            if (bestBound < 0 || bound < bestBound) {
+                bestBound = bound;
+                mBest.copyFrom(mCandidate);
+            }
+        }
+
+        if (bestBound < 0)
+            return randomMove();
+        mPosition.copyFrom(mBest);
+        return true;
+    }
+}
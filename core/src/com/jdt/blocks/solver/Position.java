@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.solver;
+
+import java.util.Arrays;
+
+/**
+ * A board state used by the solvers, with the game rules applied directly to
+ * a flat array of cell states. A move is identified by the index of a cell of
+ * the piece to move, as if the player tapped it. The rules are those of
+ * BoardRules, which follow the Game, Piece and Mobility rules exactly.
+ *
+ * A position owns reusable work arrays, so applying moves allocates nothing.
+ * Positions are not thread safe.
+ *
+ * @author Tom
+ */
+public final class Position {
+
+    private final Level mLevel;
+    private final int[] mCells;
+    /* Zobrist hash of the cells, the same value Game.getStateHash returns */
+    private long mHash;
+    /* true when the last move formed the finish piece */
+    private boolean mFinished;
+
+    /* applies the rules, with its own work arrays */
+    private final BoardRules mRules;
+
+    /**
+     * Creates a position at the start of a level
+     *
+     * @param level the level
+     */
+    public Position(Level level) {
+
+        mLevel = level;
+
+        int size = level.getCellCount();
+        mCells = new int[size];
+        mRules = new BoardRules(level);
+
+        for (int i = 0; i < size; ++i)
+            mCells[i] = level.getCell(i);
+        mHash = computeHash();
+        mFinished = false;
+    }
+
+    /** Returns the level this position belongs to */
+    public Level getLevel() {
+        return mLevel;
+    }
+
+    /** Returns the number of cells on the board */
+    public int getCellCount() {
+        return mCells.length;
+    }
+
+    /** Returns the state of a cell */
+    public int getCell(int index) {
+        return mCells[index];
+    }
+
+    /** Returns the Zobrist hash of the board */
+    public long getHash() {
+        return mHash;
+    }
+
+    /** Returns true if the last move formed the finish piece */
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * Makes this position a copy of another position of the same level
+     *
+     * @param other the position to copy
+     */
+    public void copyFrom(Position other) {
+        System.arraycopy(other.mCells, 0, mCells, 0, mCells.length);
+        mHash = other.mHash;
+        mFinished = other.mFinished;
+    }
+
+    /**
+     * Sets every cell of the board
+     *
+     * @param cells the cell states, row by row
+     */
+    public void setCells(int[] cells) {
+        System.arraycopy(cells, 0, mCells, 0, mCells.length);
+        mHash = computeHash();
+        mFinished = false;
+    }
+
+    /**
+     * Writes the cells as one byte each, levels hold no piece type above
+     * Level.MAX_PIECE_TYPE
+     *
+     * @param buffer receives the cells
+     * @param offset the first byte written
+     */
+    public void encode(byte[] buffer, int offset) {
+        for (int i = 0; i < mCells.length; ++i) {
+            int state = mCells[i];
+            if (state < 0 || state > Level.MAX_PIECE_TYPE)
+                throw new IllegalStateException("piece type out of range: " + state);
+            buffer[offset + i] = (byte) state;
+        }
+    }
+
+    /**
+     * Reads cells written by encode
+     *
+     * @param buffer holds the cells
+     * @param offset the first byte read
+     */
+    public void decode(byte[] buffer, int offset) {
+        for (int i = 0; i < mCells.length; ++i)
+            mCells[i] = buffer[offset + i];
+        mHash = computeHash();
+        mFinished = false;
+    }
+
+    /**
+     * Tests if the cells equal cells written by encode
+     *
+     * @param buffer holds the cells
+     * @param offset the first byte to compare
+     */
+    public boolean matches(byte[] buffer, int offset) {
+        for (int i = 0; i < mCells.length; ++i) {
+            if (mCells[i] != buffer[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests if another position of the same level has the same cells
+     *
+     * @param other the position to compare
+     */
+    public boolean sameCells(Position other) {
+        return Arrays.equals(mCells, other.mCells);
+    }
+
+    /**
+     * Finds every legal move. Each movable piece appears once, identified by
+     * its lowest cell index.
+     *
+     * @param moves receives the moves, must be as long as the board
+     * @return the number of moves
+     */
+    public int findMoves(int[] moves) {
+        return mRules.findMoves(mCells, 0, moves);
+    }
+
+    /**
+     * Tests if tapping a cell would move a piece
+     *
+     * @param index the tapped cell
+     * @return true if the cell is part of a piece that can move
+     */
+    public boolean canMove(int index) {
+        return mRules.canMove(mCells, 0, index);
+    }
+
+    /**
+     * Applies a move, tapping a cell. If the piece at the cell can move it is
+     * moved as far as it can in its one free direction, merging with pieces
+     * of the same type, and the resulting piece is tested against the finish
+     * piece.
+     *
+     * @param index the tapped cell
+     * @return true if a piece moved
+     */
+    public boolean move(int index) {
+        if (!mRules.move(mCells, 0, index))
+            return false;
+
+        mHash ^= mRules.getHashChange();
+        mFinished = mRules.isFinished();
+        return true;
+    }
+
+    private long computeHash() {
+        return mRules.computeHash(mCells, 0);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+/**
+ * The result of a search: the moves that finish a level, each the index of
+ * the cell to tap, and the search statistics
+ *
+ * @author Tom
+ */
+public final class Solution {
+
+    private final int mColumns;
+    private final int[] mMoves;
+    private final SolverStats mStats;
+
+    /**
+     * Creates a solution
+     *
+     * @param level the solved level
+     * @param moves the moves, or null if the level was not solved
+     * @param stats the search statistics
+     */
+    public Solution(Level level, int[] moves, SolverStats stats) {
+        mColumns = level.getColumns();
+        mMoves = moves;
+        mStats = stats;
+    }
+
+    /**
+     * Builds a solution by following the parents of a stored state back to
+     * the start
+     *
+     * @param level the solved level
+     * @param store the search states
+     * @param id the state the final move was made from
+     * @param finalMove the move that finished the level
+     * @param stats the search statistics
+     * @return the solution
+     */
+    public static Solution fromStore(Level level, StateStore store, int id, int finalMove,
+            SolverStats stats) {
+        int length = 1;
+        for (int state = id; store.getParent(state) != StateStore.NO_PARENT; state = store
+                .getParent(state))
+            ++length;
+
+        int[] moves = new int[length];
+        moves[length - 1] = finalMove;
+        int i = length - 2;
+        for (int state = id; store.getParent(state) != StateStore.NO_PARENT; state = store
+                .getParent(state))
+            moves[i--] = store.getMove(state);
+
+        return new Solution(level, moves, stats);
+    }
+
+    /**
+     * Builds a solution for a search of canonical states. The stored moves
+     * apply to canonical states, which may be mirrored or renamed, so the
+     * path is replayed from the start of the level, choosing at each step a
+     * move whose result has the canonical state of the next stored state.
+     *
+     * @param level the solved level
+     * @param store the canonical search states
+     * @param id the state the final move was made from
+     * @param canonicalizer the canonicalizer used by the search
+     * @param stats the search statistics
+     * @return the solution
+     */
+    public static Solution fromCanonicalStore(Level level, StateStore store, int id,
+            Canonicalizer canonicalizer, SolverStats stats) {
+
+        int length = 1;
+        for (int state = id; store.getParent(state) != StateStore.NO_PARENT; state = store
+                .getParent(state))
+            ++length;
+
+        /* the stored states along the path, from the start */
+        int[] path = new int[length];
+        int i = length - 1;
+        for (int state = id; i >= 0; state = store.getParent(state))
+            path[i--] = state;
+
+        Position position = level.newPosition();
+        Position next = level.newPosition();
+        Position canonical = level.newPosition();
+        int[] candidates = new int[level.getCellCount()];
+        int[] moves = new int[length];
+
+        for (int step = 0; step < length; ++step) {
+            int count = position.findMoves(candidates);
+            int move = -1;
+
+            for (int c = 0; c < count && move < 0; ++c) {
+                next.copyFrom(position);
+                next.move(candidates[c]);
+
+                if (step == length - 1) {
+                    if (next.isFinished())
+                        move = candidates[c];
+                } else {
+                    canonical.copyFrom(next);
+                    canonicalizer.canonicalize(canonical);
+                    if (store.find(canonical) == path[step + 1])
+                        move = candidates[c];
+                }
+            }
+
+            if (move < 0)
+                throw new IllegalStateException("no move matches the canonical path");
+
+            moves[step] = move;
+            position.move(move);
+        }
+
+        return new Solution(level, moves, stats);
+    }
+
+    /** Returns true if the level was solved */
+    public boolean isSolved() {
+        return mMoves != null;
+    }
+
+    /** Returns the number of moves, or -1 if the level was not solved */
+    public int getMoveCount() {
+        return mMoves == null ? -1 : mMoves.length;
+    }
+
+    /** Returns the cell index to tap for a move */
+    public int getMove(int i) {
+        return mMoves[i];
+    }
+
+    /** Returns the row of the cell to tap for a move */
+    public int getMoveRow(int i) {
+        return mMoves[i] / mColumns;
+    }
+
+    /** Returns the column of the cell to tap for a move */
+    public int getMoveColumn(int i) {
+        return mMoves[i] % mColumns;
+    }
+
+    /** Returns the search statistics */
+    public SolverStats getStats() {
+        return mStats;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        if (isSolved()) {
+            str.append(mMoves.length).append(" moves:");
+            for (int i = 0; i < mMoves.length; ++i)
+                str.append(" (").append(getMoveRow(i)).append(',').append(getMoveColumn(i))
+                        .append(')');
+        } else {
+            str.append("unsolved");
+        }
+        return str.append(" [").append(mStats).append(']').toString();
+    }
+}
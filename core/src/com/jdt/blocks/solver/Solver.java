@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+/**
+ * Finds a shortest sequence of moves that finishes a level. A search gives
+ * up unsolved soon after its thread is interrupted, so a search run in the
+ * background can be cancelled.
+ *
+ * @author Tom
+ */
+public interface Solver {
+
+    /**
+     * Searches for a solution
+     *
+     * @param level the level, searched from its starting board
+     * @return the solution, with search statistics; unsolved if the level has
+     *         no solution or the search gave up
+     */
+    Solution solve(Level level);
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+/**
+ * Counters describing the work done by a search, so that solver performance
+ * can be tracked across releases
+ *
+ * @author Tom
+ */
+public class SolverStats {
+
+    private long mStatesVisited;
+    private long mStatesGenerated;
+    private long mStatesStored;
+    private long mStatesPruned;
+    /* board states the stored states stand for, when states are canonical */
+    private double mStatesRepresented;
+    private long mPeakMemoryBytes;
+    private long mElapsedNanos;
+    private long mStartNanos;
+
+    /** Marks the start of the search */
+    public void start() {
+        mStartNanos = System.nanoTime();
+        sampleMemory();
+    }
+
+    /** Marks the end of the search */
+    public void stop() {
+        mElapsedNanos = System.nanoTime() - mStartNanos;
+        sampleMemory();
+    }
+
+    /** Counts a state whose moves were expanded */
+    public void addVisited() {
+        ++mStatesVisited;
+    }
+
+    /** Counts states whose moves were expanded */
+    public void addVisited(long count) {
+        mStatesVisited += count;
+    }
+
+    /** Counts states produced by applying moves, new or not */
+    public void addGenerated(long count) {
+        mStatesGenerated += count;
+    }
+
+    /** Counts a state that was not expanded because it is lost */
+    public void addPruned() {
+        ++mStatesPruned;
+    }
+
+    /** Sets the number of distinct states kept by the search */
+    public void setStored(long count) {
+        mStatesStored = count;
+    }
+
+    /**
+     * Counts the board states a newly stored canonical state stands for
+     *
+     * @param count the size of the state's equivalence class
+     */
+    public void addRepresented(double count) {
+        mStatesRepresented += count;
+    }
+
+    /**
+     * Records the heap in use, if it is the highest seen. Cheap enough to call
+     * every few thousand states.
+     */
+    public void sampleMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        mPeakMemoryBytes = Math.max(mPeakMemoryBytes, runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    /**
+     * Adds the counters and the search time of another search, for searches
+     * run in parts
+     */
+    public void add(SolverStats other) {
+        mStatesVisited += other.mStatesVisited;
+        mStatesGenerated += other.mStatesGenerated;
+        mStatesStored += other.mStatesStored;
+        mStatesPruned += other.mStatesPruned;
+        mStatesRepresented += other.mStatesRepresented;
+        mElapsedNanos += other.mElapsedNanos;
+        mPeakMemoryBytes = Math.max(mPeakMemoryBytes, other.mPeakMemoryBytes);
+    }
+
+    /** Returns the number of states whose moves were expanded */
+    public long getStatesVisited() {
+        return mStatesVisited;
+    }
+
+    /** Returns the number of states produced by applying moves */
+    public long getStatesGenerated() {
+        return mStatesGenerated;
+    }
+
+    /** Returns the number of distinct states kept by the search */
+    public long getStatesStored() {
+        return mStatesStored;
+    }
+
+    /** Returns the number of states not expanded because they are lost */
+    public long getStatesPruned() {
+        return mStatesPruned;
+    }
+
+    /**
+     * Returns how many times fewer states were stored than the board states
+     * they stand for, or 1 if states were not canonicalized. Not every
+     * equivalent board state is reachable, so this is an upper bound on the
+     * saving over a search without symmetry reduction.
+     */
+    public double getSymmetryReduction() {
+        if (mStatesRepresented == 0 || mStatesStored == 0)
+            return 1;
+        return mStatesRepresented / mStatesStored;
+    }
+
+    /** Returns the highest heap use sampled during the search */
+    public long getPeakMemoryBytes() {
+        return mPeakMemoryBytes;
+    }
+
+    /** Returns the search time */
+    public long getElapsedNanos() {
+        return mElapsedNanos;
+    }
+
+    /** Returns the states visited per second of search time */
+    public double getStatesPerSecond() {
+        if (mElapsedNanos == 0)
+            return 0;
+        return mStatesVisited * 1e9 / mElapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        String str = String.format("visited=%d generated=%d stored=%d pruned=%d "
+                + "peakMemory=%dKB time=%.1fms rate=%.0f states/s", mStatesVisited,
+                mStatesGenerated, mStatesStored, mStatesPruned, mPeakMemoryBytes / 1024,
+                mElapsedNanos / 1e6, getStatesPerSecond());
+        if (mStatesRepresented > 0)
+            str += String.format(" represented=%.0f reduction<=%.1fx", mStatesRepresented,
+                    getSymmetryReduction());
+        return str;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.solver;
+
+import java.util.Arrays;
+
+/**
+ * The set of states seen by a search, with the move that reached each one.
+ * States get consecutive ids in the order they are added. Each state is stored
+ * as one byte per cell in large pages, and found through an open addressing
+ * table of ids keyed by the Zobrist hash, with the cells compared to rule out
+ * hash collisions. There are no per-state objects.
+ *
+ * @author Tom
+ */
+public final class StateStore {
+
+    /** Returned by add when the state is already in the store */
+    public static final int PRESENT = -1;
+    /** The parent of the first state */
+    public static final int NO_PARENT = -1;
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_RECORDS = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_RECORDS - 1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int mRecordSize;
+    private byte[][] mPages;
+    private long[] mHashes;
+    private int[] mParents;
+    private int[] mMoves;
+    private int mSize;
+    /* open addressing table of id + 1, 0 for empty slots */
+    private int[] mTable;
+    private int mTableMask;
+
+    /**
+     * Creates an empty store
+     *
+     * @param cellCount the number of cells on the board
+     */
+    public StateStore(int cellCount) {
+
+        mRecordSize = cellCount;
+        mPages = new byte[16][];
+        mHashes = new long[INITIAL_CAPACITY];
+        mParents = new int[INITIAL_CAPACITY];
+        mMoves = new int[INITIAL_CAPACITY];
+        mSize = 0;
+        mTable = new int[INITIAL_CAPACITY * 2];
+        mTableMask = mTable.length - 1;
+    }
+
+    /** Returns the number of states in the store */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Adds a state, unless it is already in the store
+     *
+     * @param position the state to add
+     * @param parent the id of the state it was reached from, or NO_PARENT
+     * @param move the move from the parent state
+     * @return the id of the new state, or PRESENT
+     */
+    public int add(Position position, int parent, int move) {
+
+        long hash = position.getHash();
+        int slot = (int) (hash ^ (hash >>> 32)) & mTableMask;
+
+        while (mTable[slot] != 0) {
+            int id = mTable[slot] - 1;
+            if (mHashes[id] == hash && position.matches(getPage(id), getOffset(id)))
+                return PRESENT;
+            slot = (slot + 1) & mTableMask;
+        }
+
+        if (mSize == Integer.MAX_VALUE - 1)
+            throw new IllegalStateException("state store full");
+
+        int id = mSize++;
+        ensureCapacity(mSize);
+
+        position.encode(getPage(id), getOffset(id));
+        mHashes[id] = hash;
+        mParents[id] = parent;
+        mMoves[id] = move;
+        mTable[slot] = id + 1;
+
+        /* keep the table at most half full */
+        if (mSize * 2 > mTable.length)
+            rehash();
+
+        return id;
+    }
+
+    /**
+     * Tests if a state is in the store
+     *
+     * @param position the state
+     * @return the id of the state, or -1
+     */
+    public int find(Position position) {
+
+        long hash = position.getHash();
+        int slot = (int) (hash ^ (hash >>> 32)) & mTableMask;
+
+        while (mTable[slot] != 0) {
+            int id = mTable[slot] - 1;
+            if (mHashes[id] == hash && position.matches(getPage(id), getOffset(id)))
+                return id;
+            slot = (slot + 1) & mTableMask;
+        }
+        return -1;
+    }
+
+    /**
+     * Sets a position to a stored state
+     *
+     * @param id the state id
+     * @param position receives the state
+     */
+    public void load(int id, Position position) {
+        position.decode(getPage(id), getOffset(id));
+    }
+
+    /** Returns the id of the state a state was reached from */
+    public int getParent(int id) {
+        return mParents[id];
+    }
+
+    /**
+     * Changes the state a state is reached from, when a search finds a
+     * shorter way to it
+     *
+     * @param id the state id
+     * @param parent the id of the new parent state
+     * @param move the move from the new parent state
+     */
+    public void setParent(int id, int parent, int move) {
+        mParents[id] = parent;
+        mMoves[id] = move;
+    }
+
+    /** Returns the move that reached a state */
+    public int getMove(int id) {
+        return mMoves[id];
+    }
+
+    /** Returns the Zobrist hash of a state */
+    public long getHash(int id) {
+        return mHashes[id];
+    }
+
+    /** Returns the approximate number of bytes used by the store */
+    public long getMemoryBytes() {
+        long pages = 0;
+        for (int i = 0; i < mPages.length; ++i) {
+            if (mPages[i] != null)
+                pages += mPages[i].length;
+        }
+        return pages + 8L * mHashes.length + 4L * mParents.length + 4L * mMoves.length + 4L
+                * mTable.length;
+    }
+
+    private byte[] getPage(int id) {
+        return mPages[id >>> PAGE_BITS];
+    }
+
+    private int getOffset(int id) {
+        return (id & PAGE_MASK) * mRecordSize;
+    }
+
+    private void ensureCapacity(int size) {
+
+        if (size > mHashes.length) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8L, mHashes.length * 2L);
+            mHashes = Arrays.copyOf(mHashes, capacity);
+            mParents = Arrays.copyOf(mParents, capacity);
+            mMoves = Arrays.copyOf(mMoves, capacity);
+        }
+
+        int page = (size - 1) >>> PAGE_BITS;
+        if (page >= mPages.length)
+            mPages = Arrays.copyOf(mPages, mPages.length * 2);
+        if (mPages[page] == null)
+            mPages[page] = new byte[PAGE_RECORDS * mRecordSize];
+    }
+
+    private void rehash() {
+
+        mTable = new int[mTable.length * 2];
+        mTableMask = mTable.length - 1;
+
+        for (int id = 0; id < mSize; ++id) {
+            long hash = mHashes[id];
+            int slot = (int) (hash ^ (hash >>> 32)) & mTableMask;
+            while (mTable[slot] != 0)
+                slot = (slot + 1) & mTableMask;
+            mTable[slot] = id + 1;
+        }
+    }
+}
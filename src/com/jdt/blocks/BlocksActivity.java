@@ -28,7 +28,10 @@ import android.widget.TextView;
  * @author Tom
  */
 public class BlocksActivity extends Activity implements OnClickListener,
-		GameObserver {
+		GameObserver, HintEngine.HintListener, BoardLayout.ReplayListener {
+
+	/* finds hints in the background while the game is shown */
+	private HintEngine mHintEngine;
 
 	/** Called when the activity is first created. */
 	@Override
@@ -40,19 +43,35 @@ public class BlocksActivity extends Activity implements OnClickListener,
 		/* register button click handlers */
 		View button = findViewById(R.id.undo);
 		button.setOnClickListener(this);
+		button = findViewById(R.id.redo);
+		button.setOnClickListener(this);
 		button = findViewById(R.id.restart);
 		button.setOnClickListener(this);
+		button = findViewById(R.id.hint);
+		button.setOnClickListener(this);
 
 		/* connect various UI elements as needed */
 		BlocksView blocksView = (BlocksView) findViewById(R.id.board);
 		BoardLayout boardLayout = (BoardLayout) findViewById(R.id.boardLayout);
 		boardLayout.setView(blocksView);
+		boardLayout.setReplayListener(this);
 
 		BlocksApplication app = (BlocksApplication) getApplication();
 		Game game = app.getGame();
 
 		TextView Title = (TextView) findViewById(R.id.title);
 		Title.setText(game.getName());
+
+		mHintEngine = new HintEngine(game);
+		mHintEngine.setDistanceTable(app.getDistanceTable());
+	}
+
+	/** Called when the activity is destroyed. */
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		mHintEngine.shutdown();
 	}
 
 	/** Called when the system is about to start resuming a previous activity. */
@@ -66,6 +85,7 @@ public class BlocksActivity extends Activity implements OnClickListener,
 		BlocksApplication app = (BlocksApplication) getApplication();
 		Game game = app.getGame();
 		game.clearObservers();
+		mHintEngine.stop();
 	}
 
 	/** Called when the activity will start interacting with the user. */
@@ -79,11 +99,15 @@ public class BlocksActivity extends Activity implements OnClickListener,
 		Game game = app.getGame();
 		game.addObserver(this);
 		game.addObserver(boardLayout);
+		game.addObserver(mHintEngine);
+
+		/* start looking for the first hint right away */
+		mHintEngine.start();
 	}
 
 	/**
-	 * Handles button clicks for the undo and restart buttons in the activity
-	 * view
+	 * Handles button clicks for the undo, redo, restart and hint buttons in
+	 * the activity view
 	 */
 	public void onClick(View view) {
 
@@ -93,11 +117,45 @@ public class BlocksActivity extends Activity implements OnClickListener,
 		if (view == findViewById(R.id.undo)) {
 			if (!game.isFinished())
 				game.undoMove();
+		} else if (view == findViewById(R.id.redo)) {
+			if (!game.isFinished())
+				game.redoMove();
 		} else if (view == findViewById(R.id.restart)) {
 			game.restartGame();
+		} else if (view == findViewById(R.id.hint)) {
+			if (!game.isFinished() && !game.isLost())
+				mHintEngine.requestHint(this);
 		}
 	}
 
+	/*********************************************************************************************
+	 * HintListener
+	 */
+
+	/** Called with a hint, the piece to move next */
+	public void onHint(Cell cell) {
+
+		if (cell != null) {
+			BoardLayout boardLayout = (BoardLayout) findViewById(R.id.boardLayout);
+			boardLayout.showHint(cell);
+		} else {
+			AlphaTextView view = (AlphaTextView) findViewById(R.id.boardMessage);
+			view.setText(getString(R.string.no_hint));
+			view.show();
+		}
+	}
+
+	/*********************************************************************************************
+	 * ReplayListener
+	 */
+
+	/** Called when an un-done or re-done move is in place on the board */
+	public void onMoveReplayed() {
+
+		/* the move count and the board hash now agree */
+		onMovePiece();
+	}
+
 	/*********************************************************************************************
 	 * GameObserver
 	 */
@@ -110,13 +168,31 @@ public class BlocksActivity extends Activity implements OnClickListener,
 		Game game = app.getGame();
 
 		String str = String.format("%03d", game.getMoveCount());
+
+		/* show the moves lost over a shortest solution, when known */
+		int extra = app.getMovesFromOptimal();
+		if (extra > 0)
+			str += String.format(" +%d", extra);
 		TextView current = (TextView) findViewById(R.id.current);
 		current.setText(str);
 	}
 
-	/** Called when a game piece has been un-moved */
+	/**
+	 * Called when a game piece has been un-moved, before the board changes.
+	 * The move count is updated in onMoveReplayed, once the piece is back.
+	 */
 	public void onUndoMove(Piece piece) {
-		onMovePiece();
+
+		/* the game may have been lost before the undo */
+		AlphaTextView view = (AlphaTextView) findViewById(R.id.boardMessage);
+		view.hide();
+	}
+
+	/**
+	 * Called when an un-moved game piece is to be moved again, before the
+	 * board changes. The move count is updated in onMoveReplayed.
+	 */
+	public void onRedoMove(Piece piece) {
 	}
 
 	/** Called when a game has started */
@@ -170,4 +246,13 @@ public class BlocksActivity extends Activity implements OnClickListener,
 			scoreView.setText(String.format("%03d", currentScore));
 		}
 	}
+
+	/** Called when a game can no longer be finished */
+	public void onGameLost() {
+
+		/* tell the player right away, undo or restart continues the game */
+		AlphaTextView view = (AlphaTextView) findViewById(R.id.boardMessage);
+		view.setText(getString(R.string.game_lost));
+		view.show();
+	}
 }
@@ -1,17 +1,34 @@
 package com.jdt.blocks;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 import android.app.Application;
+import android.util.Log;
+
+import com.jdt.blocks.solver.DistanceTable;
 
 public class BlocksApplication extends Application {
 
+	private static final String TAG = "BlocksApplication";
+
 	private Game mGame;
+	/* the resource id of the game level */
+	private int mLevelId;
+	/* hash of the board at the start of the game */
+	private long mStartHash;
+	/* the precomputed distances of the level, loaded when first needed */
+	private DistanceTable mDistanceTable;
+	private boolean mDistanceTableLoaded;
 
 	@Override
 	public void onCreate() {
 
 		super.onCreate();
 
-		mGame = Game.createFromResource(getResources(), R.xml.game1);
+		mLevelId = R.xml.game1;
+		mGame = GameResources.createGame(getResources(), mLevelId);
+		mStartHash = mGame.getStateHash();
 	}
 
 	/**
@@ -23,4 +40,55 @@ public class BlocksApplication extends Application {
 		return mGame;
 	}
 
+	/**
+	 * Returns the distance table of the game level, built by the
+	 * DistanceTableBuilder tool and shipped as the raw resource named after
+	 * the level, for example game1_distances for game1. Loaded on the first
+	 * call.
+	 * 
+	 * @return the table, or null if the level has none
+	 */
+	public DistanceTable getDistanceTable() {
+		if (mDistanceTableLoaded)
+			return mDistanceTable;
+		mDistanceTableLoaded = true;
+
+		String name = getResources().getResourceEntryName(mLevelId) + "_distances";
+		int id = getResources().getIdentifier(name, "raw", getPackageName());
+		if (id == 0)
+			return null;
+
+		try {
+			InputStream in = getResources().openRawResource(id);
+			try {
+				DistanceTable table = DistanceTable.load(in);
+				if (table.getID() == null || table.getID().equals(mGame.getID()))
+					mDistanceTable = table;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			Log.e(TAG, "cannot read " + name, e);
+		}
+		return mDistanceTable;
+	}
+
+	/**
+	 * Returns how many moves more than a shortest solution the game will take
+	 * at best, from the moves made and the distance table
+	 * 
+	 * @return the extra moves, or -1 if not known
+	 */
+	public int getMovesFromOptimal() {
+		DistanceTable table = getDistanceTable();
+		if (table == null)
+			return -1;
+
+		int start = table.getDistance(mStartHash);
+		int current = mGame.isFinished() ? 0 : table.getDistance(mGame.getStateHash());
+		if (start == DistanceTable.UNKNOWN || current == DistanceTable.UNKNOWN)
+			return -1;
+
+		return mGame.getMoveCount() + current - start;
+	}
 }
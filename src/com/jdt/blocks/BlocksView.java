@@ -16,8 +16,6 @@
 
 package com.jdt.blocks;
 
-import com.jdt.blocks.Game.Direction;
-
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -27,8 +25,6 @@ import android.graphics.RectF;
 import android.util.AttributeSet;
 import android.view.View;
 
-import java.util.Iterator;
-
 /**
  * Renders the game board
  * 
@@ -46,12 +42,49 @@ public class BlocksView extends View {
 	/* layout that contains this view */
 	private BoardLayout mBoardLayout;
 
+	/* draws the pieces, through the canvas adapter */
+	private final BoardRenderer mRenderer = new BoardRenderer();
+	private final PaintCanvas mPaintCanvas = new PaintCanvas();
+	/* for drawing the board pieces */
+	private final Paint mPaint;
+	/* the background scaled to the view size, made when first drawn */
+	private Bitmap mBackground;
+
+	/**
+	 * Adapts an Android canvas and paint to the renderer, reusing one
+	 * rectangle so that drawing allocates nothing
+	 */
+	private static final class PaintCanvas implements BoardCanvas {
+		Canvas mCanvas;
+		Paint mPaint;
+		private final RectF mRect = new RectF();
+
+		public void fillRect(float left, float top, float right, float bottom,
+				int color, int alpha) {
+			mPaint.setColor(color);
+			mPaint.setAlpha(alpha);
+			mPaint.setStyle(Paint.Style.FILL);
+			mRect.set(left, top, right, bottom);
+			mCanvas.drawRect(mRect, mPaint);
+		}
+
+		public void drawLine(float startX, float startY, float stopX,
+				float stopY, int color, int alpha) {
+			mPaint.setColor(color);
+			mPaint.setAlpha(alpha);
+			mCanvas.drawLine(startX, startY, stopX, stopY, mPaint);
+		}
+	}
+
 	public BlocksView(Context context, AttributeSet attrs) {
 		super(context, attrs);
 
 		BlocksApplication app = (BlocksApplication) context.getApplicationContext();
 		mGame = app.getGame();
 
+		mPaint = new Paint();
+		mPaint.setStyle(Paint.Style.FILL);
+		mPaint.setStrokeWidth(2);
 	}
 
 	/** Called when the size of this view has changed. */
@@ -61,6 +94,12 @@ public class BlocksView extends View {
 
 		mViewWidth = w;
 		mViewHeight = h;
+
+		/* scaled again for the new size when next drawn */
+		if (mBackground != null) {
+			mBackground.recycle();
+			mBackground = null;
+		}
 	}
 
 	/** Called when the view should render its content. */
@@ -76,79 +115,26 @@ public class BlocksView extends View {
 		canvas.scale(mBoardLayout.getBoardScaleFactor(),
 				mBoardLayout.getBoardScaleFactor());
 
-		float cell_width = getCellWidth();
-		float cell_height = getCellHeight();
+		if (mBackground == null)
+			mBackground = createBackground();
+		canvas.drawBitmap(mBackground, 0, 0, null);
 
-		Paint paint = new Paint();
-		paint.setColor(R.color.background);
-		paint.setStyle(Paint.Style.FILL);
+		mPaintCanvas.mCanvas = canvas;
+		mPaintCanvas.mPaint = mPaint;
+		mRenderer.drawBoard(mGame, getCellWidth(), getCellHeight(), mPaintCanvas);
 
-		int rows = mGame.getRows();
-		int columns = mGame.getColumns();
+		canvas.restore();
+	}
 
-		Bitmap myBitmap = BitmapFactory.decodeResource(getResources(),
+	/* Decodes the background, scaled to the view */
+	private Bitmap createBackground() {
+		Bitmap decoded = BitmapFactory.decodeResource(getResources(),
 				R.drawable.background);
-		Bitmap mBitmap = Bitmap.createScaledBitmap(myBitmap, mViewWidth,
+		Bitmap scaled = Bitmap.createScaledBitmap(decoded, mViewWidth,
 				mViewHeight, true);
-
-		canvas.drawBitmap(mBitmap, 0, 0, null);
-
-		RectF cell_rect = new RectF();
-		Cell cell = new Cell();
-
-		/* for each game board row... */
-		for (cell.mRow = 0; cell.mRow < rows; ++cell.mRow) {
-
-			/* for each game board column */
-			for (cell.mColumn = 0; cell.mColumn < columns; ++cell.mColumn) {
-
-				if (!mGame.isCellPiece(cell))
-					continue;
-
-				boolean draw_cell = true;
-				int color = mGame.getCellColor(cell);
-				int cellState = mGame.getCellState(cell);
-
-				if (draw_cell) {
-
-					paint.setColor(color);
-					paint.setAlpha(150);
-
-					cell_rect.top = cell.mRow * cell_height + 1;
-					cell_rect.bottom = cell_rect.top + cell_height - 2;
-					cell_rect.left = cell.mColumn * cell_width + 1;
-					cell_rect.right = cell_rect.left + cell_width - 2;
-
-					paint.setStyle(Paint.Style.FILL);
-					canvas.drawRect(cell_rect, paint);
-
-					paint.setStrokeWidth(2);
-
-					/* grout, right */
-					if (cell.mColumn < columns - 1) {
-
-						cell.mColumn++;
-						if (mGame.getCellState(cell) == cellState)
-							canvas.drawLine(cell_rect.right + 1, cell_rect.top,
-									cell_rect.right + 1, cell_rect.bottom,
-									paint);
-						cell.mColumn--;
-					}
-					/* grout, bottom */
-					if (cell.mRow < rows - 1) {
-
-						cell.mRow++;
-						if (mGame.getCellState(cell) == cellState)
-							canvas.drawLine(cell_rect.left,
-									cell_rect.bottom + 1, cell_rect.right,
-									cell_rect.bottom + 1, paint);
-						cell.mRow--;
-					}
-				}
-			}
-		}
-
-		canvas.restore();
+		if (scaled != decoded)
+			decoded.recycle();
+		return scaled;
 	}
 
 	/**
@@ -200,10 +186,6 @@ public class BlocksView extends View {
 		 */
 		float cell_width = getCellWidth();
 		float cell_height = getCellHeight();
-		RectF cell_rect = new RectF();
-
-		/* get the color of the piece */
-		int color = mGame.getValueColor(piece.mState);
 
 		/* determine how far the piece has moved */
 		float moveRows = piece.mMobility.getMoveRows();
@@ -216,39 +198,10 @@ public class BlocksView extends View {
 		/* add movement offset to canvas */
 		canvas.translate(movedX, movedY);
 
-		paint.setColor(color);
-		paint.setAlpha(150);
-		paint.setStyle(Paint.Style.FILL);
-
-		/* draw each cell */
-		for (Iterator<Cell> iter = piece.mCells.iterator(); iter.hasNext();) {
-
-			Cell cell = iter.next();
-
-			cell_rect.top = cell.mRow * cell_height + 1;
-			cell_rect.bottom = cell_rect.top + cell_height - 2;
-			cell_rect.left = cell.mColumn * cell_width + 1;
-			cell_rect.right = cell_rect.left + cell_width - 2;
-
-			paint.setStyle(Paint.Style.FILL);
-			canvas.drawRect(cell_rect, paint);
-
-			/* grout, right */
-			Cell testCell = new Cell(cell, Direction.RIGHT);
-			if (piece.mCells.contains(testCell)) {
-
-				canvas.drawLine(cell_rect.right + 1, cell_rect.top,
-						cell_rect.right + 1, cell_rect.bottom, paint);
-			}
-
-			/* grout, bottom */
-			testCell = new Cell(cell, Direction.DOWN);
-			if (piece.mCells.contains(testCell)) {
-
-				canvas.drawLine(cell_rect.left, cell_rect.bottom + 1,
-						cell_rect.right, cell_rect.bottom + 1, paint);
-			}
-		}
+		mPaintCanvas.mCanvas = canvas;
+		mPaintCanvas.mPaint = paint;
+		mRenderer.drawPiece(mGame, piece, cell_width, cell_height,
+				BoardRenderer.PIECE_ALPHA, mPaintCanvas);
 
 		canvas.restore();
 	}
@@ -268,46 +221,10 @@ public class BlocksView extends View {
 	public void renderGlowingPiece(Canvas canvas, Paint paint, Piece piece,
 			int alpha) {
 
-		float cell_width = getCellWidth();
-		float cell_height = getCellHeight();
-		RectF cell_rect = new RectF();
-
-		/* get the color of the piece */
-		int color = mGame.getValueColor(piece.mState);
-
-		paint.setColor(color);
-		paint.setAlpha(alpha);
-		paint.setStyle(Paint.Style.FILL);
-
-		/* draw each cell */
-		for (Iterator<Cell> iter = piece.mCells.iterator(); iter.hasNext();) {
-
-			Cell cell = iter.next();
-
-			cell_rect.top = cell.mRow * cell_height + 1;
-			cell_rect.bottom = cell_rect.top + cell_height - 2;
-			cell_rect.left = cell.mColumn * cell_width + 1;
-			cell_rect.right = cell_rect.left + cell_width - 2;
-
-			paint.setStyle(Paint.Style.FILL);
-			canvas.drawRect(cell_rect, paint);
-
-			/* grout, right */
-			Cell testCell = new Cell(cell, Direction.RIGHT);
-			if (piece.mCells.contains(testCell)) {
-
-				canvas.drawLine(cell_rect.right + 1, cell_rect.top,
-						cell_rect.right + 1, cell_rect.bottom, paint);
-			}
-
-			/* grout, bottom */
-			testCell = new Cell(cell, Direction.DOWN);
-			if (piece.mCells.contains(testCell)) {
-
-				canvas.drawLine(cell_rect.left, cell_rect.bottom + 1,
-						cell_rect.right, cell_rect.bottom + 1, paint);
-			}
-		}
+		mPaintCanvas.mCanvas = canvas;
+		mPaintCanvas.mPaint = paint;
+		mRenderer.drawPiece(mGame, piece, getCellWidth(), getCellHeight(),
+				alpha, mPaintCanvas);
 	}
 
 	/**
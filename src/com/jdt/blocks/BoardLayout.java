@@ -39,6 +39,16 @@ import com.nineoldandroids.animation.ObjectAnimator;
  */
 public class BoardLayout extends FrameLayout implements GameObserver {
 
+	/** Receives the end of undo-move and redo-move animations */
+	public interface ReplayListener {
+
+		/**
+		 * Called when an un-done or re-done move has been animated, and the
+		 * piece is in its new place on the board
+		 */
+		void onMoveReplayed();
+	}
+
 	/* the global game instance */
 	Game mGame;
 
@@ -61,10 +71,11 @@ public class BoardLayout extends FrameLayout implements GameObserver {
 	private Piece mMovingPiece;
 
 	/*
-	 * true when animating an undo-move so that after the animation the move
-	 * isn't pushed to the move undo-stack
+	 * true when animating an undo-move or a redo-move so that after the
+	 * animation the move isn't added to the move journal again
 	 */
 	private boolean mUndoingMove = false;
+	private boolean mRedoingMove = false;
 
 	/* for animating a glowing piece, after a piece has been moved */
 	private AnimatorSet mGlowingAnimator;
@@ -73,6 +84,9 @@ public class BoardLayout extends FrameLayout implements GameObserver {
 	/* receives animation events from this object */
 	private BoardDrawable mDrawable;
 
+	/* told when an undo-move or redo-move animation ends, may be null */
+	private ReplayListener mReplayListener;
+
 	public BoardLayout(Context context, AttributeSet attrs) {
 
 		super(context, attrs);
@@ -130,18 +144,18 @@ public class BoardLayout extends FrameLayout implements GameObserver {
 				Cell cell = mMovingPiece.getFirstCell();
 
 				/*
-				 * put the moved piece on the undo stack, but not if the current
-				 * animation is the undo of a previous move
+				 * record the move in the move journal, but not if the current
+				 * animation is the undo or redo of a previous move
 				 */
-				boolean checkPiece = false;
-				if (!mUndoingMove) {
+				boolean checkPiece = !mUndoingMove;
+				boolean replayed = mUndoingMove || mRedoingMove;
+				if (!replayed)
 					mGame.addUndoMove(mMovingPiece);
-					checkPiece = true;
-				}
 
 				/* clear state, not needed anymore */
 				mMovingPiece = null;
 				mUndoingMove = false;
+				mRedoingMove = false;
 
 				if (checkPiece) {
 
@@ -156,6 +170,10 @@ public class BoardLayout extends FrameLayout implements GameObserver {
 						mGame.setFinished();
 					}
 				}
+
+				/* the board now shows the un-done or re-done move */
+				if (replayed && mReplayListener != null)
+					mReplayListener.onMoveReplayed();
 			}
 		});
 		mPieceAnimator.setDuration(250);
@@ -189,6 +207,15 @@ public class BoardLayout extends FrameLayout implements GameObserver {
 		mUndoingMove = false;
 	}
 
+	/**
+	 * Sets the listener told when an undo-move or redo-move animation ends
+	 * 
+	 * @param listener the listener, or null
+	 */
+	public void setReplayListener(ReplayListener listener) {
+		mReplayListener = listener;
+	}
+
 	/** Connects various rendering elements together */
 	public void setView(BlocksView view) {
 		mDrawable.setView(view);
@@ -293,7 +320,7 @@ public class BoardLayout extends FrameLayout implements GameObserver {
 		@Override
 		public boolean onSingleTapUp(MotionEvent event) {
 
-			if (mGame.isFinished())
+			if (mGame.isFinished() || mGame.isLost())
 				return true;
 
 			/* convert x,y to board coordinates */
@@ -318,6 +345,7 @@ public class BoardLayout extends FrameLayout implements GameObserver {
 
 			/* move the piece */
 			mUndoingMove = false;
+			mRedoingMove = false;
 			mMovingPiece = piece;
 			mDrawable.setMovingPiece(mMovingPiece);
 			mPieceAnimator.start();
@@ -349,6 +377,21 @@ public class BoardLayout extends FrameLayout implements GameObserver {
 		}
 	}
 
+	/**
+	 * Shows a hint, glowing the piece to move next
+	 * 
+	 * @param cell a cell of the piece
+	 */
+	public void showHint(Cell cell) {
+
+		/* don't interrupt a move */
+		if (mMovingPiece != null || mGlowingAnimator.isRunning())
+			return;
+
+		mGlowingPiece = mGame.getPiece(cell);
+		mGlowingAnimator.start();
+	}
+
 	/*********************************************************************************************
 	 * GameObserver
 	 */
@@ -362,6 +405,7 @@ public class BoardLayout extends FrameLayout implements GameObserver {
 
 		try {
 			mUndoingMove = true;
+			mRedoingMove = false;
 			mMovingPiece = (Piece) piece.clone();
 			mMovingPiece.mMobility.reverse();
 			mDrawable.setMovingPiece(mMovingPiece);
@@ -373,6 +417,22 @@ public class BoardLayout extends FrameLayout implements GameObserver {
 		}
 	}
 
+	/** Called when an un-moved game piece is to be moved again */
+	public void onRedoMove(Piece piece) {
+
+		try {
+			mUndoingMove = false;
+			mRedoingMove = true;
+			mMovingPiece = (Piece) piece.clone();
+			mDrawable.setMovingPiece(mMovingPiece);
+			mPieceAnimator.start();
+		} catch (Exception e) {
+			mRedoingMove = false;
+			mMovingPiece = null;
+			mDrawable.clearMovingPiece();
+		}
+	}
+
 	/** Called when a game has started */
 	public void onGameStart() {
 
@@ -384,4 +444,8 @@ public class BoardLayout extends FrameLayout implements GameObserver {
 	/** Called when a game has finished */
 	public void onGameFinish() {
 	}
+
+	/** Called when a game can no longer be finished */
+	public void onGameLost() {
+	}
 }
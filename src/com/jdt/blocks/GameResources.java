@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package com.jdt.blocks;
+
+import android.content.res.Resources;
+import android.content.res.XmlResourceParser;
+
+import com.jdt.blocks.Game.Engine;
+
+/**
+ * Creates games from Android XML resources. The game engine itself is plain
+ * Java, in the core module; this is the part that needs the Android runtime.
+ * 
+ * @author Tom
+ */
+public final class GameResources {
+
+	private GameResources() {
+	}
+
+	/**
+	 * Create a new game instance from a game resource, using the default board
+	 * engine
+	 * 
+	 * @param res the application resources
+	 * @param id the id of the game board resource (XML)
+	 * @return a new Game instance based on the board definition in the resource
+	 */
+	public static Game createGame(Resources res, int id) {
+		return createGame(res, id, Engine.BITBOARD);
+	}
+
+	/**
+	 * Create a new game instance from a game resource
+	 * 
+	 * @param res the application resources
+	 * @param id the id of the game board resource (XML)
+	 * @param engine the storage engine for the game board
+	 * @return a new Game instance based on the board definition in the resource
+	 */
+	public static Game createGame(Resources res, int id, Engine engine) {
+		XmlResourceParser parser = res.getXml(id);
+		try {
+			return Game.createFromParser(new GameParser(parser), engine);
+		} finally {
+			parser.close();
+		}
+	}
+}
@@ -0,0 +1,493 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks;
+
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Handler;
+
+import com.jdt.blocks.solver.AStarSolver;
+import com.jdt.blocks.solver.DeadStateAnalyzer;
+import com.jdt.blocks.solver.DistanceTable;
+import com.jdt.blocks.solver.Level;
+import com.jdt.blocks.solver.MonteCarloSearch;
+import com.jdt.blocks.solver.Position;
+import com.jdt.blocks.solver.Solution;
+
+/**
+ * Finds hints, the next move of a shortest solution, in the background.
+ *
+ * Every time the board changes a search for the new board is started on a
+ * single low priority thread, and the search for the previous board is
+ * cancelled. A finished search remembers the next move for every board along
+ * its solution, so when the player follows the hint the next hint is known at
+ * once. A hint request is answered immediately when the move is known,
+ * otherwise when the search for the current board ends. Boards too big to
+ * search exactly in the memory allowed get a good, not always shortest, move
+ * from a MonteCarloSearch run for a fixed time instead; that move is kept
+ * apart from the shortest solution moves, for one board. With a precomputed
+ * DistanceTable for the level, hints are looked up and nothing is searched.
+ * The thread also tests every new board with a DeadStateAnalyzer before
+ * searching it, and marks the game lost when the finish piece can no longer
+ * be formed, so the test costs the UI thread nothing.
+ * All methods must be called on the UI thread, and listeners are called on the
+ * UI thread.
+ *
+ * @author Tom
+ */
+public class HintEngine implements GameObserver {
+
+	/** Receives hints */
+	public interface HintListener {
+
+		/**
+		 * Called with a hint
+		 *
+		 * @param cell a cell of the piece to move next, null if no way to
+		 *            finish the game from the current board was found
+		 */
+		void onHint(Cell cell);
+	}
+
+	/* the most states, and the most memory for states, an exact search may use */
+	private static final int MAX_STATES = 250000;
+	private static final int MAX_STATE_BYTES = 16 * 1024 * 1024;
+	/* the most tree nodes of a Monte Carlo search */
+	private static final int MAX_TREE_NODES = 65536;
+	/* the most boards with a known next move */
+	private static final int MAX_KNOWN_MOVES = 4096;
+	/* the known move for boards with no solution */
+	private static final int NO_MOVE = -1;
+
+	private Game mGame;
+	private Handler mHandler;
+	/* one thread, at most one search waiting */
+	private ThreadPoolExecutor mExecutor;
+	private Future<?> mSearch;
+	/* finds lost boards, created and used on the search thread only */
+	private DeadStateAnalyzer mDeadStates;
+
+	/* counts board changes, search results for an older board are stale */
+	private int mBoardVersion;
+	/* hash of the current board, as Game.getStateHash */
+	private long mBoardHash;
+	/* the next move of a shortest solution, by board hash */
+	private HashMap<Long, Integer> mKnownMoves;
+	/*
+	 * the move a Monte Carlo search found for a board, good but not always
+	 * shortest, null if none
+	 */
+	private long mGuessHash;
+	private Integer mGuessMove;
+	private HintListener mPendingListener;
+	/* exact distances of every board of the level, may be null */
+	private DistanceTable mDistanceTable;
+	/* time given to a Monte Carlo search, in ms */
+	private long mMonteCarloBudget = 50;
+
+	/* latency metrics, in nanoseconds */
+	private long mBoardChangeTime;
+	private boolean mFirstHintPending;
+	private int mLatencyCount;
+	private long mLatencyTotal;
+	private long mLatencyMax;
+	private long mLatencyLast;
+	private int mSearchCount;
+	private int mCancelCount;
+	private int mMonteCarloCount;
+	private double mRolloutsPerSecond;
+
+	/**
+	 * Creates a hint engine, call on the UI thread
+	 *
+	 * @param game the game to find hints for
+	 */
+	public HintEngine(Game game) {
+		mGame = game;
+		mHandler = new Handler();
+		mKnownMoves = new HashMap<Long, Integer>();
+		mExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(1), new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "HintEngine");
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				}, new ThreadPoolExecutor.DiscardOldestPolicy());
+	}
+
+	/**
+	 * Sets the precomputed distances of the level, so that hints are looked
+	 * up instead of searched for
+	 *
+	 * @param table the table, covering every board reachable from the start
+	 *            of the level; null to search
+	 */
+	public void setDistanceTable(DistanceTable table) {
+		mDistanceTable = table;
+	}
+
+	/**
+	 * Sets how long a Monte Carlo search runs, for boards too big to search
+	 * exactly
+	 *
+	 * @param millis the time budget, 50 ms by default
+	 */
+	public void setMonteCarloBudget(long millis) {
+		mMonteCarloBudget = millis;
+	}
+
+	/**
+	 * Starts finding the hint for the current board. Call when the game is
+	 * shown, the engine follows the board from then on through the game
+	 * observer events.
+	 */
+	public void start() {
+		int[] cells = new int[mGame.getRows() * mGame.getColumns()];
+		mGame.getCellStates(cells);
+		boardChanged(cells);
+	}
+
+	/**
+	 * Cancels any search, call when the game is hidden
+	 */
+	public void stop() {
+		cancelSearch();
+		mPendingListener = null;
+	}
+
+	/**
+	 * Stops the background thread, the engine can not be used afterwards
+	 */
+	public void shutdown() {
+		stop();
+		mExecutor.shutdownNow();
+	}
+
+	/**
+	 * Asks for a hint for the current board. The listener is called before
+	 * this returns when the hint is known, otherwise when the search for the
+	 * current board ends. A new request replaces a waiting one.
+	 *
+	 * @param listener receives the hint
+	 * @return true if the hint was known
+	 */
+	public boolean requestHint(HintListener listener) {
+		Integer move = getHint();
+		if (move != null) {
+			mPendingListener = null;
+			listener.onHint(toCell(move));
+			return true;
+		}
+
+		mPendingListener = listener;
+		if (mSearch == null && !mGame.isFinished())
+			start();
+		return false;
+	}
+
+	/** Returns the number of board changes a hint has been found for */
+	public int getLatencyCount() {
+		return mLatencyCount;
+	}
+
+	/** Returns the mean time from a board change to its hint, in ms */
+	public double getMeanLatency() {
+		return mLatencyCount == 0 ? 0 : mLatencyTotal / 1e6 / mLatencyCount;
+	}
+
+	/** Returns the longest time from a board change to its hint, in ms */
+	public double getMaxLatency() {
+		return mLatencyMax / 1e6;
+	}
+
+	/** Returns the time from the last board change to its hint, in ms */
+	public double getLastLatency() {
+		return mLatencyLast / 1e6;
+	}
+
+	/** Returns the number of searches that ran to the end */
+	public int getSearchCount() {
+		return mSearchCount;
+	}
+
+	/** Returns the number of searches cancelled by a board change */
+	public int getCancelCount() {
+		return mCancelCount;
+	}
+
+	/** Returns the number of boards hinted by a Monte Carlo search */
+	public int getMonteCarloCount() {
+		return mMonteCarloCount;
+	}
+
+	/** Returns the rollouts per second of the last Monte Carlo search */
+	public double getRolloutsPerSecond() {
+		return mRolloutsPerSecond;
+	}
+
+	/*
+	 * Follows a new board: cancels the search for the old one, and starts the
+	 * lost test for the new board, followed by a search unless its hint is
+	 * already known
+	 */
+	private void boardChanged(int[] cells) {
+		cancelSearch();
+		if (mGame.getFinishPiece() == null)
+			return;
+		++mBoardVersion;
+		mBoardChangeTime = System.nanoTime();
+		mFirstHintPending = true;
+
+		final Level level = new Level(mGame.getID(), mGame.getRows(), mGame.getColumns(),
+				cells, mGame.getFinishPiece());
+		mBoardHash = level.newPosition().getHash();
+
+		if (mDistanceTable != null && !mKnownMoves.containsKey(mBoardHash)) {
+			int[] moves = new int[cells.length];
+			int move = mDistanceTable.findMove(level.newPosition(), level.newPosition(), moves);
+			mKnownMoves.put(mBoardHash, move < 0 ? NO_MOVE : move);
+		}
+
+		final boolean known = getHint() != null;
+		if (known)
+			hintFound();
+
+		final int version = mBoardVersion;
+		final long budget = mMonteCarloBudget;
+		mSearch = mExecutor.submit(new Runnable() {
+			public void run() {
+				if (!checkLost(level, version, known) && !known)
+					search(level, version, budget);
+			}
+		});
+	}
+
+	private void cancelSearch() {
+		if (mSearch != null) {
+			if (mSearch.cancel(true))
+				++mCancelCount;
+			mSearch = null;
+		}
+	}
+
+	/*
+	 * Runs on the search thread, returns true if the board is lost. Posts the
+	 * result to the UI thread unless a search for the board follows.
+	 */
+	private boolean checkLost(Level level, final int version, boolean known) {
+		if (mDeadStates == null)
+			mDeadStates = new DeadStateAnalyzer(level);
+		Position position = level.newPosition();
+		final boolean lost = !position.isFinished() && mDeadStates.isLost(position);
+
+		if (lost || known) {
+			mHandler.post(new Runnable() {
+				public void run() {
+					checkDone(version, lost);
+				}
+			});
+		}
+		return lost;
+	}
+
+	/* Runs on the UI thread with the result of a lost test */
+	private void checkDone(int version, boolean lost) {
+		if (version != mBoardVersion)
+			return;
+		mSearch = null;
+		if (lost)
+			mGame.setLost();
+	}
+
+	/* Runs on the search thread */
+	private void search(Level level, final int version, long budget) {
+		int maxStates = Math.min(MAX_STATES, MAX_STATE_BYTES / level.getCellCount());
+		AStarSolver solver = new AStarSolver();
+		solver.setMaxStates(maxStates);
+		Solution solution = solver.solve(level);
+
+		boolean solved = solution.isSolved();
+		int[] moves = new int[solved ? solution.getMoveCount() : 0];
+		for (int i = 0; i < moves.length; ++i)
+			moves[i] = solution.getMove(i);
+
+		/* too big to search exactly, settle for a good move */
+		double rolloutsPerSecond = -1;
+		if (!solved && solution.getStats().getStatesStored() >= maxStates
+				&& !Thread.currentThread().isInterrupted()) {
+			MonteCarloSearch monteCarlo = new MonteCarloSearch(level, MAX_TREE_NODES
+					+ level.getCellCount(), version);
+			monteCarlo.setTimeBudget(budget);
+			int move = monteCarlo.findMove(level.newPosition());
+			rolloutsPerSecond = monteCarlo.getRolloutsPerSecond();
+			if (move >= 0) {
+				solved = true;
+				moves = new int[] { move };
+			}
+		}
+
+		/* the board before each move of the solution */
+		final long[] hashes = new long[Math.max(moves.length, 1)];
+		Position position = level.newPosition();
+		hashes[0] = position.getHash();
+		for (int i = 0; i < moves.length; ++i) {
+			hashes[i] = position.getHash();
+			position.move(moves[i]);
+		}
+
+		/* a search cut short says nothing about the board */
+		final boolean cancelled = Thread.currentThread().isInterrupted();
+		final boolean found = solved;
+		final int[] hintMoves = moves;
+		final double rate = rolloutsPerSecond;
+		mHandler.post(new Runnable() {
+			public void run() {
+				searchDone(version, cancelled, found, hashes, hintMoves, rate);
+			}
+		});
+	}
+
+	/* Runs on the UI thread with the result of a search */
+	private void searchDone(int version, boolean cancelled, boolean solved, long[] hashes,
+			int[] moves, double rolloutsPerSecond) {
+
+		if (version == mBoardVersion)
+			mSearch = null;
+		if (cancelled)
+			return;
+		++mSearchCount;
+		if (rolloutsPerSecond >= 0) {
+			++mMonteCarloCount;
+			mRolloutsPerSecond = rolloutsPerSecond;
+
+			/* not a shortest solution, later lookups must not take it as one */
+			mGuessHash = hashes[0];
+			mGuessMove = solved ? moves[0] : NO_MOVE;
+		} else {
+			if (mKnownMoves.size() + hashes.length > MAX_KNOWN_MOVES)
+				mKnownMoves.clear();
+
+			/* moves of a stale search are still good for their boards */
+			if (solved) {
+				for (int i = 0; i < moves.length; ++i)
+					mKnownMoves.put(hashes[i], moves[i]);
+			} else {
+				mKnownMoves.put(hashes[0], NO_MOVE);
+			}
+		}
+
+		if (version == mBoardVersion)
+			hintFound();
+	}
+
+	/* Records the latency of the hint for the current board, and delivers it */
+	private void hintFound() {
+		if (mFirstHintPending) {
+			mFirstHintPending = false;
+			mLatencyLast = System.nanoTime() - mBoardChangeTime;
+			mLatencyTotal += mLatencyLast;
+			mLatencyMax = Math.max(mLatencyMax, mLatencyLast);
+			++mLatencyCount;
+		}
+
+		if (mPendingListener != null) {
+			HintListener listener = mPendingListener;
+			mPendingListener = null;
+			listener.onHint(toCell(getHint()));
+		}
+	}
+
+	/*
+	 * Returns the hint for the current board, the next move of a shortest
+	 * solution or else a Monte Carlo move; null if not found yet
+	 */
+	private Integer getHint() {
+		Integer move = mKnownMoves.get(mBoardHash);
+		if (move == null && mGuessMove != null && mGuessHash == mBoardHash)
+			move = mGuessMove;
+		return move;
+	}
+
+	private Cell toCell(int move) {
+		if (move == NO_MOVE)
+			return null;
+		return new Cell(move / mGame.getColumns(), move % mGame.getColumns());
+	}
+
+	/*********************************************************************************************
+	 * GameObserver
+	 */
+
+	/** Called when a game piece has been moved */
+	public void onMovePiece() {
+		start();
+	}
+
+	/** Called when a game piece has been un-moved, before the board changes */
+	public void onUndoMove(Piece piece) {
+		/* the board once the piece has moved back */
+		boardChanged(piece, -piece.mMobility.getMoveRows(),
+				-piece.mMobility.getMoveColumns());
+	}
+
+	/** Called when a game piece is to be moved again, before the board changes */
+	public void onRedoMove(Piece piece) {
+		/* the board once the piece has moved */
+		boardChanged(piece, piece.mMobility.getMoveRows(),
+				piece.mMobility.getMoveColumns());
+	}
+
+	/* Starts over for the board once a piece has moved by an offset */
+	private void boardChanged(Piece piece, int moveRows, int moveColumns) {
+		int columns = mGame.getColumns();
+		int[] cells = new int[mGame.getRows() * columns];
+		mGame.getCellStates(cells);
+
+		for (int i = 0; i < piece.getCellCount(); ++i)
+			cells[piece.getCellRow(i) * columns + piece.getCellColumn(i)] = Game.CELL_EMPTY;
+		for (int i = 0; i < piece.getCellCount(); ++i)
+			cells[(piece.getCellRow(i) + moveRows) * columns + piece.getCellColumn(i)
+					+ moveColumns] = piece.mState;
+
+		boardChanged(cells);
+	}
+
+	/** Called when a game has started */
+	public void onGameStart() {
+		start();
+	}
+
+	/** Called when a game has finished */
+	public void onGameFinish() {
+		cancelSearch();
+		mPendingListener = null;
+	}
+
+	/** Called when a game can no longer be finished */
+	public void onGameLost() {
+		cancelSearch();
+		mKnownMoves.put(mBoardHash, NO_MOVE);
+		hintFound();
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+/**
+ * A StateStore that many threads can add to at once. States are spread over
+ * a number of stripes by the high bits of their Zobrist hash, each stripe a
+ * StateStore with its own lock, so threads only wait for each other when they
+ * add states that land in the same stripe. A state id holds the stripe in its
+ * low bits and the id within the stripe above them.
+ *
+ * @author Tom
+ */
+public final class ConcurrentStateSet {
+
+    /** Returned by add when the state is already in the set */
+    public static final int PRESENT = StateStore.PRESENT;
+    /** The parent of the first state */
+    public static final int NO_PARENT = StateStore.NO_PARENT;
+
+    private final StateStore[] mStripes;
+    private final int mStripeBits;
+    private final int mStripeMask;
+
+    /**
+     * Creates an empty set
+     *
+     * @param cellCount the number of cells on the board
+     * @param stripeBits log2 of the number of stripes, from 0 to 10
+     */
+    public ConcurrentStateSet(int cellCount, int stripeBits) {
+
+        if (stripeBits < 0 || stripeBits > 10)
+            throw new IllegalArgumentException("illegal stripe count");
+
+        mStripeBits = stripeBits;
+        mStripeMask = (1 << stripeBits) - 1;
+        mStripes = new StateStore[1 << stripeBits];
+        for (int i = 0; i < mStripes.length; ++i)
+            mStripes[i] = new StateStore(cellCount);
+    }
+
+    /**
+     * Adds a state, unless it is already in the set. Safe to call from any
+     * thread.
+     *
+     * @param position the state to add
+     * @param parent the id of the state it was reached from, or NO_PARENT
+     * @param move the move from the parent state
+     * @return the id of the new state, or PRESENT
+     */
+    public int add(Position position, int parent, int move) {
+
+        int stripe = getStripe(position.getHash());
+        StateStore store = mStripes[stripe];
+
+        int local;
+        synchronized (store) {
+            local = store.add(position, parent, move);
+        }
+
+        if (local == StateStore.PRESENT)
+            return PRESENT;
+        if (local > (Integer.MAX_VALUE >>> mStripeBits))
+            throw new IllegalStateException("state set full");
+        return (local << mStripeBits) | stripe;
+    }
+
+    /** Returns the id of the state a state was reached from */
+    public int getParent(int id) {
+        StateStore store = mStripes[id & mStripeMask];
+        synchronized (store) {
+            return store.getParent(id >>> mStripeBits);
+        }
+    }
+
+    /** Returns the move that reached a state */
+    public int getMove(int id) {
+        StateStore store = mStripes[id & mStripeMask];
+        synchronized (store) {
+            return store.getMove(id >>> mStripeBits);
+        }
+    }
+
+    /** Returns the number of states in the set */
+    public long size() {
+        long size = 0;
+        for (StateStore store : mStripes) {
+            synchronized (store) {
+                size += store.size();
+            }
+        }
+        return size;
+    }
+
+    /** Returns the approximate number of bytes used by the set */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (StateStore store : mStripes) {
+            synchronized (store) {
+                bytes += store.getMemoryBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /*
+     * The stripe comes from the high bits, the stores index their tables with
+     * the low bits
+     */
+    private int getStripe(long hash) {
+        return mStripeBits == 0 ? 0 : (int) (hash >>> (64 - mStripeBits));
+    }
+}
@@ -0,0 +1,491 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Breadth-first search for levels whose states do not fit in memory. Each
+ * layer of the search, the states at one distance from the start, is kept in
+ * a file of sorted records on disk.
+ *
+ * To make the next layer, the states of the current layer are read in turn
+ * and their successors collected in a memory buffer; whenever the buffer
+ * fills it is sorted and written out as a run file. The runs are then merged
+ * in one streaming pass that drops duplicates, and at the same time merged
+ * against the sorted file of every state seen so far, dropping states that
+ * were reached before (delayed duplicate detection). What survives is the
+ * new layer, which is finally merged into the seen file.
+ *
+ * After each layer a checkpoint is written to the work directory, and a
+ * search of the same level started on the same directory resumes from the
+ * last completed layer. The moves of a solution are recovered by scanning
+ * the layers backwards for a state with a move to the next state on the
+ * path.
+ *
+ * States are stored 2 cells per byte when all piece types are below 16.
+ *
+ * @author Tom
+ */
+public class ExternalSolver implements Solver {
+
+    private static final String CHECKPOINT = "checkpoint.properties";
+    private static final String SEEN = "seen";
+
+    private final File mDirectory;
+    private long mMemoryBytes = 64L << 20;
+    private boolean mResume = true;
+    private long mMaxStates = Long.MAX_VALUE;
+
+    /* the level being solved and how its states are encoded */
+    private Level mLevel;
+    private int mRecordSize;
+    private boolean mPacked;
+    private int[] mCells;
+
+    /**
+     * Creates a solver that works in a directory
+     *
+     * @param directory the work directory, created if needed
+     */
+    public ExternalSolver(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Sets the memory used to collect and sort states before they are written
+     * to a run file
+     *
+     * @param bytes the buffer size
+     */
+    public void setMemoryBytes(long bytes) {
+        mMemoryBytes = bytes;
+    }
+
+    /**
+     * Sets whether a search resumes from a checkpoint of the same level left
+     * in the work directory, the default, or starts over
+     *
+     * @param resume true to resume
+     */
+    public void setResume(boolean resume) {
+        mResume = resume;
+    }
+
+    /**
+     * Limits the number of states seen, the search gives up unsolved after the
+     * layer that reaches the limit
+     *
+     * @param maxStates the state limit
+     */
+    public void setMaxStates(long maxStates) {
+        mMaxStates = maxStates;
+    }
+
+    public Solution solve(Level level) {
+        try {
+            return search(level);
+        } catch (IOException e) {
+            throw new IllegalStateException("external search failed in " + mDirectory, e);
+        } finally {
+            mLevel = null;
+            mCells = null;
+        }
+    }
+
+    private Solution search(Level level) throws IOException {
+
+        SolverStats stats = new SolverStats();
+        stats.start();
+
+        mLevel = level;
+        mCells = new int[level.getCellCount()];
+        mPacked = true;
+        for (int i = 0; i < level.getCellCount(); ++i)
+            mPacked &= level.getCell(i) < 16;
+        mRecordSize = mPacked ? (level.getCellCount() + 1) / 2 : level.getCellCount();
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs())
+            throw new IOException("cannot create " + mDirectory);
+
+        String fingerprint = fingerprint(level);
+        int depth;
+        long seen;
+        Properties checkpoint = readCheckpoint();
+
+        if (checkpoint != null && fingerprint.equals(checkpoint.getProperty("level"))) {
+            depth = Integer.parseInt(checkpoint.getProperty("layer"));
+            seen = Long.parseLong(checkpoint.getProperty("seen"));
+        } else {
+            /* start over with the start state as layer 0 */
+            deleteSearchFiles();
+            depth = 0;
+            seen = 1;
+            byte[] record = new byte[mRecordSize];
+            encode(level.newPosition(), record, 0);
+            RecordWriter writer = new RecordWriter(layerFile(0), mRecordSize);
+            writer.write(record, 0);
+            writer.close();
+            writer = new RecordWriter(seenFile(0), mRecordSize);
+            writer.write(record, 0);
+            writer.close();
+            writeCheckpoint(fingerprint, 0, seen);
+        }
+
+        while (true) {
+            Expansion expansion = expand(depth, stats);
+
+            if (expansion.mSolvedState != null) {
+                int[] moves = buildPath(depth, expansion.mSolvedState, expansion.mSolvedMove);
+                stats.setStored(seen);
+                stats.stop();
+                return new Solution(level, moves, stats);
+            }
+
+            long count = mergeLayer(depth + 1, expansion.mRuns);
+            for (File run : expansion.mRuns)
+                run.delete();
+
+            seen += count;
+            ++depth;
+            writeCheckpoint(fingerprint, depth, seen);
+            seenFile(depth - 1).delete();
+            stats.sampleMemory();
+
+            if (count == 0 || seen >= mMaxStates) {
+                stats.setStored(seen);
+                stats.stop();
+                return new Solution(level, null, stats);
+            }
+        }
+    }
+
+    /* The sorted runs of successors of a layer, or the move that solved it */
+    private static final class Expansion {
+        final List<File> mRuns = new ArrayList<File>();
+        byte[] mSolvedState;
+        int mSolvedMove;
+    }
+
+    /*
+     * Reads a layer, writing the successors of its states to sorted run
+     * files, unless a move forms the finish piece
+     */
+    private Expansion expand(int depth, SolverStats stats) throws IOException {
+
+        Expansion expansion = new Expansion();
+        int capacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE / mRecordSize, mMemoryBytes
+                / mRecordSize));
+        byte[] buffer = new byte[capacity * mRecordSize];
+        int count = 0;
+
+        Position position = mLevel.newPosition();
+        Position next = mLevel.newPosition();
+        int[] moves = new int[mLevel.getCellCount()];
+        byte[] record = new byte[mRecordSize];
+
+        RecordReader reader = new RecordReader(layerFile(depth), mRecordSize);
+        try {
+            while (reader.next(record)) {
+                decode(record, 0, position);
+                stats.addVisited();
+
+                int moveCount = position.findMoves(moves);
+                stats.addGenerated(moveCount);
+
+                for (int i = 0; i < moveCount; ++i) {
+                    next.copyFrom(position);
+                    next.move(moves[i]);
+
+                    if (next.isFinished()) {
+                        expansion.mSolvedState = record;
+                        expansion.mSolvedMove = moves[i];
+                        for (File run : expansion.mRuns)
+                            run.delete();
+                        expansion.mRuns.clear();
+                        return expansion;
+                    }
+
+                    if (count == capacity) {
+                        expansion.mRuns.add(writeRun(depth + 1, expansion.mRuns.size(), buffer,
+                                count));
+                        count = 0;
+                    }
+                    encode(next, buffer, count * mRecordSize);
+                    ++count;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        if (count > 0)
+            expansion.mRuns.add(writeRun(depth + 1, expansion.mRuns.size(), buffer, count));
+        return expansion;
+    }
+
+    /* Sorts the buffered records and writes them, without duplicates */
+    private File writeRun(int depth, int number, byte[] buffer, int count) throws IOException {
+
+        int[] order = new int[count];
+        for (int i = 0; i < count; ++i)
+            order[i] = i;
+        sort(buffer, order, new int[count], 0, count);
+
+        File file = new File(mDirectory, "run-" + depth + "-" + number);
+        RecordWriter writer = new RecordWriter(file, mRecordSize);
+        try {
+            int previous = -1;
+            for (int i = 0; i < count; ++i) {
+                int offset = order[i] * mRecordSize;
+                if (previous >= 0 && compare(buffer, previous, buffer, offset, mRecordSize) == 0)
+                    continue;
+                writer.write(buffer, offset);
+                previous = offset;
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /*
+     * Merges the runs into the new layer, dropping duplicates and states
+     * already seen, then merges the new layer into a new seen file. Returns
+     * the number of states in the layer.
+     */
+    private long mergeLayer(int depth, List<File> runs) throws IOException {
+
+        RunMerger merger = new RunMerger(runs, mRecordSize);
+        RecordReader seen = new RecordReader(seenFile(depth - 1), mRecordSize);
+        RecordWriter layer = new RecordWriter(layerFile(depth), mRecordSize);
+
+        try {
+            byte[] seenRecord = new byte[mRecordSize];
+            boolean seenMore = seen.next(seenRecord);
+            byte[] last = null;
+
+            for (byte[] record = merger.next(); record != null; record = merger.next()) {
+                if (last != null && compare(record, 0, last, 0, mRecordSize) == 0)
+                    continue;
+
+                while (seenMore && compare(seenRecord, 0, record, 0, mRecordSize) < 0)
+                    seenMore = seen.next(seenRecord);
+                if (!seenMore || compare(seenRecord, 0, record, 0, mRecordSize) != 0)
+                    layer.write(record, 0);
+
+                if (last == null)
+                    last = new byte[mRecordSize];
+                System.arraycopy(record, 0, last, 0, mRecordSize);
+            }
+        } finally {
+            merger.close();
+            seen.close();
+            layer.close();
+        }
+
+        List<File> parts = new ArrayList<File>();
+        parts.add(seenFile(depth - 1));
+        parts.add(layerFile(depth));
+        RunMerger union = new RunMerger(parts, mRecordSize);
+        RecordWriter writer = new RecordWriter(seenFile(depth), mRecordSize);
+        try {
+            for (byte[] record = union.next(); record != null; record = union.next())
+                writer.write(record, 0);
+        } finally {
+            union.close();
+            writer.close();
+        }
+
+        return layer.getCount();
+    }
+
+    /*
+     * Recovers the moves to a state of a layer by finding, in each earlier
+     * layer, a state with a move to the next state on the path
+     */
+    private int[] buildPath(int depth, byte[] state, int finalMove) throws IOException {
+
+        int[] path = new int[depth + 1];
+        path[depth] = finalMove;
+
+        Position position = mLevel.newPosition();
+        Position next = mLevel.newPosition();
+        int[] moves = new int[mLevel.getCellCount()];
+        byte[] target = state.clone();
+        byte[] record = new byte[mRecordSize];
+        byte[] encoded = new byte[mRecordSize];
+
+        for (int layer = depth - 1; layer >= 0; --layer) {
+            boolean found = false;
+            RecordReader reader = new RecordReader(layerFile(layer), mRecordSize);
+            try {
+                while (!found && reader.next(record)) {
+                    decode(record, 0, position);
+                    int count = position.findMoves(moves);
+                    for (int i = 0; i < count && !found; ++i) {
+                        next.copyFrom(position);
+                        next.move(moves[i]);
+                        encode(next, encoded, 0);
+                        if (compare(encoded, 0, target, 0, mRecordSize) == 0) {
+                            path[layer] = moves[i];
+                            System.arraycopy(record, 0, target, 0, mRecordSize);
+                            found = true;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            if (!found)
+                throw new IOException("layer " + layer + " has no parent of the solution path");
+        }
+        return path;
+    }
+
+    private void encode(Position position, byte[] buffer, int offset) {
+        int size = position.getCellCount();
+        if (!mPacked) {
+            position.encode(buffer, offset);
+            return;
+        }
+        for (int i = 0; i < size; i += 2) {
+            int high = position.getCell(i);
+            int low = i + 1 < size ? position.getCell(i + 1) : 0;
+            buffer[offset + (i >> 1)] = (byte) ((high << 4) | low);
+        }
+    }
+
+    private void decode(byte[] buffer, int offset, Position position) {
+        if (!mPacked) {
+            position.decode(buffer, offset);
+            return;
+        }
+        for (int i = 0; i < mCells.length; ++i) {
+            int value = buffer[offset + (i >> 1)];
+            mCells[i] = ((i & 1) == 0 ? value >> 4 : value) & 0xF;
+        }
+        position.setCells(mCells);
+    }
+
+    /* Compares records as unsigned bytes */
+    static int compare(byte[] a, int aOffset, byte[] b, int bOffset, int size) {
+        for (int i = 0; i < size; ++i) {
+            int difference = (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);
+            if (difference != 0)
+                return difference;
+        }
+        return 0;
+    }
+
+    /* Merge sorts record numbers by record contents */
+    private void sort(byte[] buffer, int[] order, int[] work, int from, int to) {
+        if (to - from < 2)
+            return;
+
+        int middle = (from + to) >>> 1;
+        sort(buffer, order, work, from, middle);
+        sort(buffer, order, work, middle, to);
+
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; ++i) {
+            if (right >= to
+                    || (left < middle && compare(buffer, order[left] * mRecordSize, buffer,
+                            order[right] * mRecordSize, mRecordSize) <= 0))
+                work[i] = order[left++];
+            else
+                work[i] = order[right++];
+        }
+        System.arraycopy(work, from, order, from, to - from);
+    }
+
+    /* Deletes the files of an earlier search */
+    private void deleteSearchFiles() {
+        File[] files = mDirectory.listFiles();
+        for (int i = 0; files != null && i < files.length; ++i) {
+            String name = files[i].getName();
+            if (name.startsWith("layer-") || name.startsWith(SEEN + "-")
+                    || name.startsWith("run-") || name.startsWith(CHECKPOINT))
+                files[i].delete();
+        }
+    }
+
+    private File layerFile(int depth) {
+        return new File(mDirectory, "layer-" + depth);
+    }
+
+    private File seenFile(int depth) {
+        return new File(mDirectory, SEEN + "-" + depth);
+    }
+
+    private Properties readCheckpoint() throws IOException {
+        File file = new File(mDirectory, CHECKPOINT);
+        if (!mResume || !file.isFile())
+            return null;
+
+        Properties properties = new Properties();
+        InputStream stream = new FileInputStream(file);
+        try {
+            properties.load(stream);
+        } finally {
+            stream.close();
+        }
+        return properties;
+    }
+
+    /* Writes the checkpoint to a new file and renames it over the old one */
+    private void writeCheckpoint(String fingerprint, int depth, long seen) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("level", fingerprint);
+        properties.setProperty("layer", Integer.toString(depth));
+        properties.setProperty("seen", Long.toString(seen));
+
+        File temporary = new File(mDirectory, CHECKPOINT + ".tmp");
+        OutputStream stream = new FileOutputStream(temporary);
+        try {
+            properties.store(stream, "external search checkpoint");
+        } finally {
+            stream.close();
+        }
+
+        File file = new File(mDirectory, CHECKPOINT);
+        if (!temporary.renameTo(file)) {
+            file.delete();
+            if (!temporary.renameTo(file))
+                throw new IOException("cannot write " + file);
+        }
+    }
+
+    /* Identifies a level by its size, starting cells and finish piece */
+    private static String fingerprint(Level level) {
+        long hash = level.newPosition().getHash();
+        hash = hash * 31 + level.getRows();
+        hash = hash * 31 + level.getColumns();
+        hash = hash * 31 + level.getFinishState();
+        for (int i = 0; i < level.getFinishCellCount(); ++i)
+            hash = hash * 31 + level.getFinishCell(i);
+        return Long.toHexString(hash);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Breadth-first search with each level of the search expanded by the
+ * threads of a ForkJoinPool. The frontier, the states at the current
+ * distance from the start, is split into ranges that are expanded in
+ * parallel; new states are deduplicated in a ConcurrentStateSet and
+ * collected into the next frontier. A level is finished before the next one
+ * starts, so the first solution found is as short as the one the
+ * BreadthFirstSolver finds.
+ *
+ * Frontier states carry their cells with them, so expanding a state reads no
+ * shared data and only adding new states touches the shared set.
+ *
+ * Requires java.util.concurrent.ForkJoinPool, which is not available on the
+ * Android versions the game supports; this solver is for desktop tools.
+ *
+ * @author Tom
+ */
+public class ParallelSolver implements Solver {
+
+    /* frontier states expanded by one task without splitting further */
+    private static final int LEAF_STATES = 256;
+    /* stripes of the visited set per pool thread */
+    private static final int STRIPES_PER_THREAD = 16;
+
+    private final ForkJoinPool mPool;
+    private int mMaxStates = Integer.MAX_VALUE - 1;
+
+    /**
+     * Creates a solver that runs on a pool
+     *
+     * @param pool the pool, shared with the caller
+     */
+    public ParallelSolver(ForkJoinPool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * Limits the number of states kept, the search gives up unsolved when the
+     * limit is reached
+     *
+     * @param maxStates the state limit
+     */
+    public void setMaxStates(int maxStates) {
+        mMaxStates = maxStates;
+    }
+
+    public Solution solve(Level level) {
+
+        SolverStats stats = new SolverStats();
+        stats.start();
+
+        int cellCount = level.getCellCount();
+        int stripes = Integer.highestOneBit(mPool.getParallelism() * STRIPES_PER_THREAD);
+        ConcurrentStateSet visited = new ConcurrentStateSet(cellCount,
+                Math.min(10, Integer.numberOfTrailingZeros(stripes)));
+
+        Position start = level.newPosition();
+        Frontier frontier = new Frontier(cellCount, 1);
+        frontier.add(visited.add(start, ConcurrentStateSet.NO_PARENT, 0), start);
+
+        Search search = new Search(level, visited);
+        search.mStored.set(1);
+
+        while (frontier.mCount > 0) {
+            search.mFrontier = frontier;
+            mPool.invoke(new Expand(search, 0, frontier.mCount));
+            stats.sampleMemory();
+
+            if (search.mSolutionParent != ConcurrentStateSet.NO_PARENT)
+                break;
+            if (search.mStored.get() >= mMaxStates)
+                break;
+
+            frontier = Frontier.join(search.mNext, cellCount);
+            search.mNext.clear();
+        }
+
+        stats.addVisited(search.mVisitedCount.get());
+        stats.addGenerated(search.mGenerated.get());
+        stats.setStored(visited.size());
+        stats.stop();
+
+        if (search.mSolutionParent == ConcurrentStateSet.NO_PARENT)
+            return new Solution(level, null, stats);
+
+        return new Solution(level, buildPath(visited, search.mSolutionParent,
+                search.mSolutionMove), stats);
+    }
+
+    /* Follows the parents of the state the final move was made from */
+    private static int[] buildPath(ConcurrentStateSet visited, int id, int finalMove) {
+        int length = 1;
+        for (int state = id; visited.getParent(state) != ConcurrentStateSet.NO_PARENT;) {
+            state = visited.getParent(state);
+            ++length;
+        }
+
+        int[] moves = new int[length];
+        moves[length - 1] = finalMove;
+        int i = length - 2;
+        for (int state = id; visited.getParent(state) != ConcurrentStateSet.NO_PARENT;) {
+            moves[i--] = visited.getMove(state);
+            state = visited.getParent(state);
+        }
+        return moves;
+    }
+
+    /* State shared by the tasks expanding one search */
+    private static final class Search {
+
+        final Level mLevel;
+        final ConcurrentStateSet mVisited;
+        Frontier mFrontier;
+        final Queue<Frontier> mNext = new ConcurrentLinkedQueue<Frontier>();
+        final AtomicLong mVisitedCount = new AtomicLong();
+        final AtomicLong mGenerated = new AtomicLong();
+        final AtomicInteger mStored = new AtomicInteger();
+        volatile boolean mSolved;
+        int mSolutionParent = ConcurrentStateSet.NO_PARENT;
+        int mSolutionMove;
+
+        Search(Level level, ConcurrentStateSet visited) {
+            mLevel = level;
+            mVisited = visited;
+        }
+
+        synchronized void setSolution(int parent, int move) {
+            if (!mSolved) {
+                mSolutionParent = parent;
+                mSolutionMove = move;
+                mSolved = true;
+            }
+        }
+    }
+
+    /* Expands a range of the frontier, splitting it while it is large */
+    private static final class Expand extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Search mSearch;
+        private final int mFrom;
+        private final int mTo;
+
+        Expand(Search search, int from, int to) {
+            mSearch = search;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom > LEAF_STATES) {
+                int middle = (mFrom + mTo) >>> 1;
+                invokeAll(new Expand(mSearch, mFrom, middle), new Expand(mSearch, middle, mTo));
+                return;
+            }
+
+            Search search = mSearch;
+            Frontier frontier = search.mFrontier;
+            int cellCount = search.mLevel.getCellCount();
+            Position position = search.mLevel.newPosition();
+            Position next = search.mLevel.newPosition();
+            int[] moves = new int[cellCount];
+            Frontier out = new Frontier(cellCount, (mTo - mFrom) * 2);
+            long visited = 0;
+            long generated = 0;
+
+            for (int i = mFrom; i < mTo && !search.mSolved; ++i) {
+                int id = frontier.mIds[i];
+                position.decode(frontier.mCells, i * cellCount);
+                ++visited;
+
+                int count = position.findMoves(moves);
+                generated += count;
+
+                for (int m = 0; m < count; ++m) {
+                    next.copyFrom(position);
+                    next.move(moves[m]);
+
+                    if (next.isFinished()) {
+                        search.setSolution(id, moves[m]);
+                        break;
+                    }
+
+                    int child = search.mVisited.add(next, id, moves[m]);
+                    if (child != ConcurrentStateSet.PRESENT)
+                        out.add(child, next);
+                }
+            }
+
+            search.mVisitedCount.addAndGet(visited);
+            search.mGenerated.addAndGet(generated);
+            search.mStored.addAndGet(out.mCount);
+            if (out.mCount > 0)
+                search.mNext.add(out);
+        }
+    }
+
+    /* States to expand, with their ids and cells */
+    private static final class Frontier {
+
+        private final int mCellCount;
+        int[] mIds;
+        byte[] mCells;
+        int mCount;
+
+        Frontier(int cellCount, int capacity) {
+            mCellCount = cellCount;
+            mIds = new int[Math.max(1, capacity)];
+            mCells = new byte[mIds.length * cellCount];
+        }
+
+        void add(int id, Position position) {
+            if (mCount == mIds.length) {
+                mIds = Arrays.copyOf(mIds, mIds.length * 2);
+                mCells = Arrays.copyOf(mCells, mIds.length * mCellCount);
+            }
+            mIds[mCount] = id;
+            position.encode(mCells, mCount * mCellCount);
+            ++mCount;
+        }
+
+        /* Joins the frontier parts collected by the tasks of a level */
+        static Frontier join(Queue<Frontier> parts, int cellCount) {
+            int count = 0;
+            for (Frontier part : parts)
+                count += part.mCount;
+
+            Frontier frontier = new Frontier(cellCount, count);
+            for (Frontier part : parts) {
+                System.arraycopy(part.mIds, 0, frontier.mIds, frontier.mCount, part.mCount);
+                System.arraycopy(part.mCells, 0, frontier.mCells, frontier.mCount * cellCount,
+                        part.mCount * cellCount);
+                frontier.mCount += part.mCount;
+            }
+            return frontier;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file of fixed size records in order, through a FileChannel and a
+ * direct buffer
+ *
+ * @author Tom
+ */
+final class RecordReader implements Closeable {
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final FileInputStream mStream;
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private final int mRecordSize;
+
+    /**
+     * Opens a record file
+     *
+     * @param file the file
+     * @param recordSize the size of each record, in bytes
+     */
+    RecordReader(File file, int recordSize) throws IOException {
+        mStream = new FileInputStream(file);
+        mChannel = mStream.getChannel();
+        mBuffer = ByteBuffer.allocateDirect(Math.max(BUFFER_BYTES, recordSize));
+        mBuffer.flip();
+        mRecordSize = recordSize;
+    }
+
+    /**
+     * Reads the next record
+     *
+     * @param record receives the record
+     * @return false at the end of the file
+     */
+    boolean next(byte[] record) throws IOException {
+        if (mBuffer.remaining() < mRecordSize) {
+            mBuffer.compact();
+            while (mBuffer.hasRemaining() && mChannel.read(mBuffer) > 0)
+                ;
+            mBuffer.flip();
+
+            if (mBuffer.remaining() < mRecordSize) {
+                if (mBuffer.hasRemaining())
+                    throw new IOException("truncated record file");
+                return false;
+            }
+        }
+        mBuffer.get(record, 0, mRecordSize);
+        return true;
+    }
+
+    public void close() throws IOException {
+        mStream.close();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a file of fixed size records, through a FileChannel and a direct
+ * buffer. Closing the writer forces the file to disk, so that a checkpoint
+ * written afterwards never refers to a partial file.
+ *
+ * @author Tom
+ */
+final class RecordWriter implements Closeable {
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final FileOutputStream mStream;
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private final int mRecordSize;
+    private long mCount;
+
+    /**
+     * Creates a record file, replacing any file of the same name
+     *
+     * @param file the file
+     * @param recordSize the size of each record, in bytes
+     */
+    RecordWriter(File file, int recordSize) throws IOException {
+        mStream = new FileOutputStream(file);
+        mChannel = mStream.getChannel();
+        mBuffer = ByteBuffer.allocateDirect(Math.max(BUFFER_BYTES, recordSize));
+        mRecordSize = recordSize;
+    }
+
+    /**
+     * Appends a record
+     *
+     * @param buffer holds the record
+     * @param offset the first byte of the record
+     */
+    void write(byte[] buffer, int offset) throws IOException {
+        if (mBuffer.remaining() < mRecordSize)
+            flush();
+        mBuffer.put(buffer, offset, mRecordSize);
+        ++mCount;
+    }
+
+    /** Returns the number of records written */
+    long getCount() {
+        return mCount;
+    }
+
+    public void close() throws IOException {
+        try {
+            flush();
+            mChannel.force(false);
+        } finally {
+            mStream.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining())
+            mChannel.write(mBuffer);
+        mBuffer.clear();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Merges sorted record files into one sorted stream, keeping the current
+ * record of each file in a binary heap. Duplicates are not removed.
+ *
+ * @author Tom
+ */
+final class RunMerger {
+
+    private final RecordReader[] mReaders;
+    private final byte[][] mRecords;
+    private final int mRecordSize;
+    /* readers with a current record, a heap ordered by record */
+    private final int[] mHeap;
+    private int mHeapSize;
+    /* the reader of the record returned last, to advance on the next call */
+    private int mLast = -1;
+
+    /**
+     * Opens the files to merge
+     *
+     * @param files the sorted record files
+     * @param recordSize the size of each record, in bytes
+     */
+    RunMerger(List<File> files, int recordSize) throws IOException {
+
+        mRecordSize = recordSize;
+        mReaders = new RecordReader[files.size()];
+        mRecords = new byte[files.size()][recordSize];
+        mHeap = new int[files.size()];
+
+        try {
+            for (int i = 0; i < mReaders.length; ++i) {
+                mReaders[i] = new RecordReader(files.get(i), recordSize);
+                if (mReaders[i].next(mRecords[i]))
+                    push(i);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the next record in order, valid until the next call, or null
+     * when all files are done
+     */
+    byte[] next() throws IOException {
+        if (mLast >= 0) {
+            if (mReaders[mLast].next(mRecords[mLast]))
+                push(mLast);
+            mLast = -1;
+        }
+        if (mHeapSize == 0)
+            return null;
+
+        mLast = pop();
+        return mRecords[mLast];
+    }
+
+    void close() throws IOException {
+        IOException failure = null;
+        for (RecordReader reader : mReaders) {
+            try {
+                if (reader != null)
+                    reader.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    private void push(int reader) {
+        int i = mHeapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (less(mHeap[parent], reader))
+                break;
+            mHeap[i] = mHeap[parent];
+            i = parent;
+        }
+        mHeap[i] = reader;
+    }
+
+    private int pop() {
+        int top = mHeap[0];
+        int reader = mHeap[--mHeapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= mHeapSize)
+                break;
+            if (child + 1 < mHeapSize && less(mHeap[child + 1], mHeap[child]))
+                ++child;
+            if (!less(mHeap[child], reader))
+                break;
+            mHeap[i] = mHeap[child];
+            i = child;
+        }
+        if (mHeapSize > 0)
+            mHeap[i] = reader;
+        return top;
+    }
+
+    private boolean less(int a, int b) {
+        return ExternalSolver.compare(mRecords[a], 0, mRecords[b], 0, mRecordSize) < 0;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.solver;
+
+import java.util.Arrays;
+
+/**
+ * The full graph of board states reachable from the start of a level, with
+ * the exact number of moves left to finish from every state.
+ *
+ * States are found breadth first and kept in a StateStore; the moves out of
+ * each state are kept as compressed rows of child state ids. A move that
+ * forms the finish piece ends the game, so it has no child state. Distances
+ * are then found breadth first backwards from the states with a finishing
+ * move, through the reversed edges.
+ *
+ * @author Tom
+ */
+public final class StateGraph {
+
+    /** The distance of states the level cannot be finished from */
+    public static final int UNSOLVABLE = -1;
+
+    /* the child id of a move that forms the finish piece */
+    private static final int FINISH = -1;
+
+    private final Level mLevel;
+    private final StateStore mStore;
+    /* the moves out of state id are mEdges[mEdgeStart[id]] up to mEdgeStart[id + 1] */
+    private int[] mEdgeStart;
+    private int[] mEdges;
+    private int[] mDistance;
+    private final SolverStats mStats;
+
+    private StateGraph(Level level) {
+        mLevel = level;
+        mStore = new StateStore(level.getCellCount());
+        mStats = new SolverStats();
+    }
+
+    /**
+     * Finds every state reachable from the start of a level and its distance
+     * to the finish
+     *
+     * @param level the level
+     * @param maxStates the most states to find, the graph is not built when
+     *            the level has more
+     * @return the graph
+     * @throws IllegalStateException if the level has more than maxStates
+     *             states
+     */
+    public static StateGraph build(Level level, int maxStates) {
+        StateGraph graph = new StateGraph(level);
+        graph.mStats.start();
+        graph.explore(maxStates);
+        graph.computeDistances();
+        graph.mStats.setStored(graph.mStore.size());
+        graph.mStats.sampleMemory();
+        graph.mStats.stop();
+        return graph;
+    }
+
+    /** Returns the level */
+    public Level getLevel() {
+        return mLevel;
+    }
+
+    /** Returns the number of states, the start state has id 0 */
+    public int size() {
+        return mStore.size();
+    }
+
+    /** Returns the number of moves between states, finishing moves included */
+    public int getEdgeCount() {
+        return mEdgeStart[mStore.size()];
+    }
+
+    /** Returns the Zobrist hash of a state, the same value Game.getStateHash returns */
+    public long getHash(int id) {
+        return mStore.getHash(id);
+    }
+
+    /**
+     * Returns the number of moves of a shortest way to finish from a state, or
+     * UNSOLVABLE
+     */
+    public int getDistance(int id) {
+        return mDistance[id];
+    }
+
+    /**
+     * Counts the shortest ways to finish from the start. Ways that differ in
+     * any tap are counted apart, even when they pass through the same states.
+     *
+     * @return the number of shortest solutions, 0 if the level cannot be
+     *         finished; a double, since the count can pass the range of long
+     */
+    public double countShortestSolutions() {
+        int size = mStore.size();
+        if (mDistance[0] == UNSOLVABLE)
+            return 0;
+
+        /* order the states by distance, so that children are counted first */
+        int[] byDistance = new int[size];
+        int[] start = new int[mDistance[0] + 2];
+        for (int id = 0; id < size; ++id) {
+            if (mDistance[id] != UNSOLVABLE && mDistance[id] <= mDistance[0])
+                ++start[mDistance[id] + 1];
+        }
+        for (int d = 1; d < start.length; ++d)
+            start[d] += start[d - 1];
+        int[] fill = Arrays.copyOf(start, start.length);
+        for (int id = 0; id < size; ++id) {
+            if (mDistance[id] != UNSOLVABLE && mDistance[id] <= mDistance[0])
+                byDistance[fill[mDistance[id]]++] = id;
+        }
+
+        double[] ways = new double[size];
+        for (int i = 0; i < start[start.length - 1]; ++i) {
+            int id = byDistance[i];
+            double count = 0;
+            for (int e = mEdgeStart[id]; e < mEdgeStart[id + 1]; ++e) {
+                int child = mEdges[e];
+                if (child == FINISH) {
+                    if (mDistance[id] == 1)
+                        count += 1;
+                } else if (mDistance[child] == mDistance[id] - 1) {
+                    count += ways[child];
+                }
+            }
+            ways[id] = count;
+        }
+        return ways[0];
+    }
+
+    /** Returns the search statistics */
+    public SolverStats getStats() {
+        return mStats;
+    }
+
+    private void explore(int maxStates) {
+        Position position = mLevel.newPosition();
+        Position next = mLevel.newPosition();
+        int[] moves = new int[mLevel.getCellCount()];
+
+        mEdgeStart = new int[1024];
+        mEdges = new int[4096];
+        int edgeCount = 0;
+
+        mStore.add(position, StateStore.NO_PARENT, 0);
+
+        /* states are stored in the order they are expanded, so rows are in id order */
+        for (int id = 0; id < mStore.size(); ++id) {
+            mStore.load(id, position);
+            mStats.addVisited();
+
+            int count = position.findMoves(moves);
+            mStats.addGenerated(count);
+
+            if (id + 2 > mEdgeStart.length)
+                mEdgeStart = Arrays.copyOf(mEdgeStart, mEdgeStart.length * 2);
+            if (edgeCount + count > mEdges.length)
+                mEdges = Arrays.copyOf(mEdges, Math.max(mEdges.length * 2, edgeCount + count));
+            mEdgeStart[id] = edgeCount;
+
+            for (int i = 0; i < count; ++i) {
+                next.copyFrom(position);
+                next.move(moves[i]);
+
+                int child = FINISH;
+                if (!next.isFinished()) {
+                    child = mStore.add(next, id, moves[i]);
+                    if (child == StateStore.PRESENT)
+                        child = mStore.find(next);
+                }
+                mEdges[edgeCount++] = child;
+            }
+
+            if (mStore.size() > maxStates)
+                throw new IllegalStateException("more than " + maxStates + " states");
+        }
+        mEdgeStart[mStore.size()] = edgeCount;
+    }
+
+    private void computeDistances() {
+        int size = mStore.size();
+        int edgeCount = mEdgeStart[size];
+
+        /* reverse the edges, counting the parents of each state first */
+        int[] parentStart = new int[size + 1];
+        for (int i = 0; i < edgeCount; ++i) {
+            if (mEdges[i] != FINISH)
+                ++parentStart[mEdges[i] + 1];
+        }
+        for (int id = 0; id < size; ++id)
+            parentStart[id + 1] += parentStart[id];
+
+        int[] fill = Arrays.copyOf(parentStart, size);
+        int[] parents = new int[parentStart[size]];
+        for (int id = 0; id < size; ++id) {
+            for (int i = mEdgeStart[id]; i < mEdgeStart[id + 1]; ++i) {
+                if (mEdges[i] != FINISH)
+                    parents[fill[mEdges[i]]++] = id;
+            }
+        }
+
+        mDistance = new int[size];
+        Arrays.fill(mDistance, UNSOLVABLE);
+
+        /* the states one move from the finish start the queue */
+        int[] queue = new int[size];
+        int tail = 0;
+        for (int id = 0; id < size; ++id) {
+            for (int i = mEdgeStart[id]; i < mEdgeStart[id + 1]; ++i) {
+                if (mEdges[i] == FINISH) {
+                    mDistance[id] = 1;
+                    queue[tail++] = id;
+                    break;
+                }
+            }
+        }
+
+        for (int head = 0; head < tail; ++head) {
+            int id = queue[head];
+            for (int i = parentStart[id]; i < parentStart[id + 1]; ++i) {
+                int parent = parents[i];
+                if (mDistance[parent] == UNSOLVABLE) {
+                    mDistance[parent] = mDistance[id] + 1;
+                    queue[tail++] = parent;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.tools;
+
+import com.jdt.blocks.solver.BatchBoards;
+import com.jdt.blocks.solver.Level;
+import com.jdt.blocks.solver.Position;
+
+import java.util.Random;
+
+/**
+ * Measures how many boards per second BatchBoards steps, against stepping
+ * one Position per board. Every board of a random level gets a random tap on
+ * every step, many of which do not move a piece, and finished boards start
+ * over. Both ways must end with the same boards.
+ *
+ * Usage: BatchBoardsBenchmark [-boards n] [-size n] [-steps n] [-runs n]
+ * [-seed n]
+ *
+ * @author Tom
+ */
+public final class BatchBoardsBenchmark {
+
+    /* tap vectors generated ahead and used in turn */
+    private static final int TAP_VECTORS = 64;
+
+    private BatchBoardsBenchmark() {
+    }
+
+    public static void main(String[] args) {
+
+        int boards = 4096;
+        int size = 8;
+        int steps = 200;
+        int runs = 3;
+        long seed = 1;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String name = args[i];
+            long value = Long.parseLong(args[i + 1]);
+            if (name.equals("-boards"))
+                boards = (int) value;
+            else if (name.equals("-size"))
+                size = (int) value;
+            else if (name.equals("-steps"))
+                steps = (int) value;
+            else if (name.equals("-runs"))
+                runs = (int) value;
+            else if (name.equals("-seed"))
+                seed = value;
+            else
+                throw new IllegalArgumentException("unknown option " + name);
+        }
+
+        Random random = new Random(seed);
+        Level level = RandomLevels.create(random, size, size, 3, 40, size * 4);
+        int[][] taps = new int[TAP_VECTORS][boards];
+        for (int[] vector : taps) {
+            for (int board = 0; board < boards; ++board)
+                vector[board] = random.nextInt(level.getCellCount());
+        }
+
+        System.out.println(boards + " boards of " + size + "x" + size + ", " + steps
+                + " steps");
+        System.out.println("engine        boards/s      moves/s");
+
+        /* one untimed pass to warm up, then the best of the timed runs */
+        long batchBest = Long.MAX_VALUE;
+        long positionBest = Long.MAX_VALUE;
+        long batchMoves = 0;
+        long positionMoves = 0;
+        long batchCheck = 0;
+        long positionCheck = 0;
+        for (int run = 0; run <= runs; ++run) {
+            BatchBoards batch = new BatchBoards(level, boards);
+            long start = System.nanoTime();
+            batchMoves = stepBatch(batch, taps, steps);
+            long elapsed = System.nanoTime() - start;
+            if (run > 0)
+                batchBest = Math.min(batchBest, elapsed);
+            batchCheck = 0;
+            for (int board = 0; board < boards; ++board)
+                batchCheck ^= batch.getHash(board) * (board + 1);
+
+            Position[] positions = new Position[boards];
+            for (int board = 0; board < boards; ++board)
+                positions[board] = level.newPosition();
+            start = System.nanoTime();
+            positionMoves = stepPositions(positions, taps, steps);
+            elapsed = System.nanoTime() - start;
+            if (run > 0)
+                positionBest = Math.min(positionBest, elapsed);
+            positionCheck = 0;
+            for (int board = 0; board < boards; ++board)
+                positionCheck ^= positions[board].getHash() * (board + 1);
+        }
+
+        if (batchMoves != positionMoves || batchCheck != positionCheck)
+            throw new IllegalStateException("BatchBoards and Position boards differ");
+
+        report("BatchBoards", (long) boards * steps, batchMoves, batchBest);
+        report("Position", (long) boards * steps, positionMoves, positionBest);
+    }
+
+    private static long stepBatch(BatchBoards batch, int[][] taps, int steps) {
+        boolean[] finished = new boolean[batch.size()];
+        long moves = 0;
+        for (int step = 0; step < steps; ++step) {
+            moves += batch.step(taps[step % TAP_VECTORS], null, finished);
+            for (int board = 0; board < finished.length; ++board) {
+                if (finished[board])
+                    batch.reset(board);
+            }
+        }
+        return moves;
+    }
+
+    private static long stepPositions(Position[] positions, int[][] taps, int steps) {
+        Level level = positions[0].getLevel();
+        Position start = level.newPosition();
+        long moves = 0;
+        for (int step = 0; step < steps; ++step) {
+            int[] vector = taps[step % TAP_VECTORS];
+            for (int board = 0; board < positions.length; ++board) {
+                Position position = positions[board];
+                if (position.move(vector[board])) {
+                    ++moves;
+                    if (position.isFinished())
+                        position.copyFrom(start);
+                }
+            }
+        }
+        return moves;
+    }
+
+    private static void report(String name, long stepped, long moves, long nanos) {
+        System.out.println(String.format("%-12s %10.0f %12.0f", name, stepped * 1e9 / nanos,
+                moves * 1e9 / nanos));
+    }
+}
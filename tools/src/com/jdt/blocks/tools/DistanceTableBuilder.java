@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.tools;
+
+import com.jdt.blocks.GameParser;
+import com.jdt.blocks.solver.DistanceTable;
+import com.jdt.blocks.solver.Level;
+import com.jdt.blocks.solver.StateGraph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Builds the distance table of each game level at build time. The full state
+ * graph of the level is enumerated, the exact distance to the finish is found
+ * for every state, and the states the level can be finished from are written
+ * as a DistanceTable named after the level file, for example res/xml/game1.xml
+ * becomes game1_distances.bin in the output directory, res/raw by default.
+ * The game loads the table of a level when it has one.
+ *
+ * Needs an XmlPull implementation such as kXML on the class path.
+ *
+ * Usage: DistanceTableBuilder [-out dir] [-maxStates n] level.xml ...
+ *
+ * @author Tom
+ */
+public final class DistanceTableBuilder {
+
+    private DistanceTableBuilder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        File outDir = new File("res/raw");
+        int maxStates = 20000000;
+
+        int i = 0;
+        for (; i + 1 < args.length && args[i].startsWith("-"); i += 2) {
+            String name = args[i];
+            if (name.equals("-out"))
+                outDir = new File(args[i + 1]);
+            else if (name.equals("-maxStates"))
+                maxStates = Integer.parseInt(args[i + 1]);
+            else
+                throw new IllegalArgumentException("unknown option " + name);
+        }
+        if (i == args.length)
+            throw new IllegalArgumentException("no level files");
+
+        if (!outDir.isDirectory() && !outDir.mkdirs())
+            throw new IOException("cannot create " + outDir);
+
+        for (; i < args.length; ++i) {
+            File file = new File(args[i]);
+            String name = file.getName().replaceFirst("\\.xml$", "");
+            File out = new File(outDir, name + "_distances.bin");
+            build(readLevel(file), maxStates, out);
+        }
+    }
+
+    /**
+     * Builds the distance table of a level and writes it to a file
+     *
+     * @param level the level
+     * @param maxStates the most states the level may have
+     * @param out the table file
+     * @return the table
+     */
+    public static DistanceTable build(Level level, int maxStates, File out) throws IOException {
+
+        StateGraph graph = StateGraph.build(level, maxStates);
+        DistanceTable table = createTable(graph);
+
+        OutputStream stream = new FileOutputStream(out);
+        try {
+            table.write(stream);
+        } finally {
+            stream.close();
+        }
+
+        int maxDistance = 0;
+        for (int id = 0; id < graph.size(); ++id)
+            maxDistance = Math.max(maxDistance, graph.getDistance(id));
+
+        System.out.println(level.getID() + ": " + graph.size() + " states, "
+                + graph.getEdgeCount() + " moves, " + table.size() + " can finish, start "
+                + graph.getDistance(0) + " moves, longest " + maxDistance + " moves, "
+                + out.length() + " bytes, " + graph.getStats().getElapsedNanos() / 1000000
+                + " ms");
+        return table;
+    }
+
+    /**
+     * Creates the table of a state graph, the states the level can be
+     * finished from sorted by hash
+     *
+     * @param graph the state graph
+     * @return the table
+     * @throws IllegalStateException if two states have the same hash
+     */
+    public static DistanceTable createTable(final StateGraph graph) {
+
+        int count = 0;
+        for (int id = 0; id < graph.size(); ++id) {
+            if (graph.getDistance(id) != StateGraph.UNSOLVABLE)
+                ++count;
+        }
+
+        Integer[] ids = new Integer[count];
+        count = 0;
+        for (int id = 0; id < graph.size(); ++id) {
+            if (graph.getDistance(id) != StateGraph.UNSOLVABLE)
+                ids[count++] = id;
+        }
+        Arrays.sort(ids, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                long ha = graph.getHash(a);
+                long hb = graph.getHash(b);
+                return ha < hb ? -1 : (ha == hb ? 0 : 1);
+            }
+        });
+
+        long[] hashes = new long[count];
+        int[] distances = new int[count];
+        for (int i = 0; i < count; ++i) {
+            hashes[i] = graph.getHash(ids[i]);
+            distances[i] = graph.getDistance(ids[i]);
+            if (i > 0 && hashes[i] == hashes[i - 1])
+                throw new IllegalStateException("two states with hash "
+                        + Long.toHexString(hashes[i]));
+        }
+        return new DistanceTable(graph.getLevel().getID(), hashes, distances);
+    }
+
+    /**
+     * Reads a level file
+     *
+     * @param file the level XML, as in res/xml
+     * @return the level
+     */
+    public static Level readLevel(File file) throws IOException {
+
+        InputStream in = new FileInputStream(file);
+        try {
+            GameParser gameParser = new GameParser(in);
+            if (!gameParser.valid())
+                throw new IOException("illegal game definition in " + file);
+            return Level.fromParser(gameParser);
+        } finally {
+            in.close();
+        }
+    }
+}
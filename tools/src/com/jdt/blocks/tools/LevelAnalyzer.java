@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.tools;
+
+import com.jdt.blocks.solver.Level;
+import com.jdt.blocks.solver.StateGraph;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reports difficulty metrics for a set of level files: the length of the
+ * shortest solution, how many shortest solutions there are, the number of
+ * reachable board states, and the average branching factor, the number of
+ * moves out of a state averaged over every reachable state. The metrics come
+ * from the full StateGraph of each level, so they are exact, and levels are
+ * analyzed in parallel. The report is CSV or JSON, one row or object per file
+ * in file name order, so reports of two versions of a level pack can be
+ * compared line by line.
+ *
+ * Levels with more than -maxStates states, or too many for the heap, are
+ * reported as too large. The levels are read with GameParser, which needs an
+ * XmlPull implementation such as kXML on the class path; nothing else of
+ * Android is needed.
+ *
+ * Usage: LevelAnalyzer [-format csv|json] [-out file] [-threads n]
+ * [-maxStates n] dir-or-level.xml ...
+ *
+ * @author Tom
+ */
+public final class LevelAnalyzer {
+
+    /* the status of an analysis */
+    private static final String OK = "ok";
+    private static final String UNSOLVABLE = "unsolvable";
+    private static final String TOO_LARGE = "too_large";
+    private static final String ERROR = "error";
+
+    /** The metrics of one level file */
+    private static final class Analysis {
+        String mFile;
+        String mID = "";
+        int mRows;
+        int mColumns;
+        String mStatus;
+        int mMoves = -1;
+        double mSolutions;
+        int mStates;
+        int mEdges;
+        double mBranching;
+        long mMillis;
+    }
+
+    private LevelAnalyzer() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        String format = "csv";
+        File outFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxStates = 2000000;
+
+        int i = 0;
+        for (; i + 1 < args.length && args[i].startsWith("-"); i += 2) {
+            String name = args[i];
+            String value = args[i + 1];
+            if (name.equals("-format"))
+                format = value;
+            else if (name.equals("-out"))
+                outFile = new File(value);
+            else if (name.equals("-threads"))
+                threads = Integer.parseInt(value);
+            else if (name.equals("-maxStates"))
+                maxStates = Integer.parseInt(value);
+            else
+                throw new IllegalArgumentException("unknown option " + name);
+        }
+        if (!format.equals("csv") && !format.equals("json"))
+            throw new IllegalArgumentException("unknown format " + format);
+
+        List<File> files = new ArrayList<File>();
+        for (; i < args.length; ++i)
+            addLevelFiles(new File(args[i]), files);
+        if (files.isEmpty())
+            throw new IllegalArgumentException("no level files");
+
+        List<Analysis> analyses = analyzeAll(files, threads, maxStates);
+
+        PrintWriter out = outFile == null ? new PrintWriter(new OutputStreamWriter(System.out,
+                "utf-8")) : new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(outFile), "utf-8"));
+        try {
+            if (format.equals("csv"))
+                writeCsv(analyses, out);
+            else
+                writeJson(analyses, out);
+        } finally {
+            if (outFile == null)
+                out.flush();
+            else
+                out.close();
+        }
+    }
+
+    /**
+     * Analyzes level files in parallel
+     *
+     * @param files the level files
+     * @param threads number of threads
+     * @param maxStates the most states of a level, larger levels are reported
+     *            as too large
+     * @return the analyses, in the order of the files
+     */
+    private static List<Analysis> analyzeAll(List<File> files, int threads, final int maxStates)
+            throws InterruptedException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Analysis>> futures = new ArrayList<Future<Analysis>>();
+            for (final File file : files) {
+                futures.add(executor.submit(new Callable<Analysis>() {
+                    public Analysis call() {
+                        return analyze(file, maxStates);
+                    }
+                }));
+            }
+
+            List<Analysis> analyses = new ArrayList<Analysis>();
+            for (Future<Analysis> future : futures) {
+                try {
+                    analyses.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return analyses;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Analysis analyze(File file, int maxStates) {
+        Analysis analysis = new Analysis();
+        analysis.mFile = file.getPath();
+        long start = System.nanoTime();
+
+        try {
+            Level level = DistanceTableBuilder.readLevel(file);
+            analysis.mID = level.getID();
+            analysis.mRows = level.getRows();
+            analysis.mColumns = level.getColumns();
+
+            StateGraph graph = StateGraph.build(level, maxStates);
+            analysis.mStates = graph.size();
+            analysis.mEdges = graph.getEdgeCount();
+            analysis.mBranching = (double) graph.getEdgeCount() / graph.size();
+            analysis.mMoves = graph.getDistance(0);
+            analysis.mSolutions = graph.countShortestSolutions();
+            analysis.mStatus = analysis.mMoves == StateGraph.UNSOLVABLE ? UNSOLVABLE : OK;
+        } catch (IllegalStateException e) {
+            /* StateGraph gives up past maxStates */
+            analysis.mStatus = TOO_LARGE;
+        } catch (OutOfMemoryError e) {
+            /* the graph is dropped with the stack, other levels can go on */
+            analysis.mStatus = TOO_LARGE;
+        } catch (Exception e) {
+            System.err.println(file + ": " + e);
+            analysis.mStatus = ERROR;
+        }
+
+        analysis.mMillis = (System.nanoTime() - start) / 1000000;
+        return analysis;
+    }
+
+    private static void addLevelFiles(File file, List<File> files) {
+        if (!file.isDirectory()) {
+            files.add(file);
+            return;
+        }
+
+        File[] levels = file.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".xml");
+            }
+        });
+        if (levels == null)
+            return;
+        Arrays.sort(levels);
+        files.addAll(Arrays.asList(levels));
+    }
+
+    private static void writeCsv(List<Analysis> analyses, PrintWriter out) {
+        out.println("file,id,rows,columns,status,moves,solutions,states,edges,branching,millis");
+        for (Analysis a : analyses) {
+            out.println(csv(a.mFile) + "," + csv(a.mID) + "," + a.mRows + "," + a.mColumns + ","
+                    + a.mStatus + "," + a.mMoves + "," + count(a.mSolutions) + "," + a.mStates
+                    + "," + a.mEdges + "," + String.format("%.3f", a.mBranching) + ","
+                    + a.mMillis);
+        }
+    }
+
+    private static void writeJson(List<Analysis> analyses, PrintWriter out) {
+        out.println("[");
+        for (int i = 0; i < analyses.size(); ++i) {
+            Analysis a = analyses.get(i);
+            out.print("  {\"file\": " + json(a.mFile) + ", \"id\": " + json(a.mID)
+                    + ", \"rows\": " + a.mRows + ", \"columns\": " + a.mColumns
+                    + ", \"status\": \"" + a.mStatus + "\", \"moves\": " + a.mMoves
+                    + ", \"solutions\": " + count(a.mSolutions) + ", \"states\": " + a.mStates
+                    + ", \"edges\": " + a.mEdges + ", \"branching\": "
+                    + String.format("%.3f", a.mBranching) + ", \"millis\": " + a.mMillis + "}");
+            out.println(i + 1 < analyses.size() ? "," : "");
+        }
+        out.println("]");
+    }
+
+    /* Formats a solution count, exactly while it fits in a long */
+    private static String count(double count) {
+        return count < 9e18 ? Long.toString((long) count) : String.format("%.6e", count);
+    }
+
+    private static String csv(String text) {
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0)
+            return text;
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String json(String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.tools;
+
+import com.jdt.blocks.Game;
+import com.jdt.blocks.solver.AStarSolver;
+import com.jdt.blocks.solver.Level;
+import com.jdt.blocks.solver.Solution;
+import com.jdt.blocks.solver.SolverStats;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates levels within a difficulty band and writes them as game definition
+ * XML, in the format of res/xml/game1.xml.
+ *
+ * The generator is a pipeline of three stages joined by bounded queues: one
+ * thread makes random boards, a pool of threads solves them with the
+ * AStarSolver and keeps those whose shortest solution length and branching
+ * factor (moves generated per state expanded) fall inside the band, and the
+ * main thread writes the kept levels, skipping repeats. A full queue blocks
+ * the stage feeding it, so memory stays flat and the board maker never runs
+ * ahead of the solvers however long the generator runs. Throughput is
+ * reported every few seconds.
+ *
+ * Usage: LevelGenerator [-out dir] [-count n] [-hours h] [-threads n]
+ * [-rows n] [-columns n] [-colors n] [-density percent] [-goal type]
+ * [-walk n] [-minMoves n] [-maxMoves n] [-minBranching x] [-maxBranching x]
+ * [-maxStates n] [-queue n] [-seed n]
+ *
+ * @author Tom
+ */
+public final class LevelGenerator {
+
+    /* seconds between progress reports */
+    private static final int REPORT_SECONDS = 10;
+
+    /* the generator settings */
+    private File mOutDir = new File("generated");
+    private int mCount = 100;
+    private double mHours = 0;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private int mRows = 6;
+    private int mColumns = 6;
+    private int mColors = 3;
+    private int mDensity = 40;
+    private int mGoalType = Game.CELL_STATE_MIN;
+    private int mWalk = -1;
+    private int mMinMoves = 6;
+    private int mMaxMoves = 20;
+    private double mMinBranching = 0;
+    private double mMaxBranching = Double.MAX_VALUE;
+    private int mMaxStates = 500000;
+    private int mQueueSize = 64;
+    private long mSeed = 1;
+
+    /* pipeline counters */
+    private final AtomicLong mMade = new AtomicLong();
+    private final AtomicLong mSolved = new AtomicLong();
+    private final AtomicLong mKept = new AtomicLong();
+    private final AtomicLong mStatesVisited = new AtomicLong();
+
+    /** A generated board on its way through the pipeline */
+    private static final class Candidate {
+        final Level mLevel;
+        int mMoves;
+        double mBranching;
+
+        Candidate(Level level) {
+            mLevel = level;
+        }
+    }
+
+    private LevelGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        LevelGenerator generator = new LevelGenerator();
+        generator.parse(args);
+        generator.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String name = args[i];
+            String value = args[i + 1];
+            if (name.equals("-out"))
+                mOutDir = new File(value);
+            else if (name.equals("-count"))
+                mCount = Integer.parseInt(value);
+            else if (name.equals("-hours"))
+                mHours = Double.parseDouble(value);
+            else if (name.equals("-threads"))
+                mThreads = Integer.parseInt(value);
+            else if (name.equals("-rows"))
+                mRows = Integer.parseInt(value);
+            else if (name.equals("-columns"))
+                mColumns = Integer.parseInt(value);
+            else if (name.equals("-colors"))
+                mColors = Integer.parseInt(value);
+            else if (name.equals("-density"))
+                mDensity = Integer.parseInt(value);
+            else if (name.equals("-goal"))
+                mGoalType = Integer.parseInt(value);
+            else if (name.equals("-walk"))
+                mWalk = Integer.parseInt(value);
+            else if (name.equals("-minMoves"))
+                mMinMoves = Integer.parseInt(value);
+            else if (name.equals("-maxMoves"))
+                mMaxMoves = Integer.parseInt(value);
+            else if (name.equals("-minBranching"))
+                mMinBranching = Double.parseDouble(value);
+            else if (name.equals("-maxBranching"))
+                mMaxBranching = Double.parseDouble(value);
+            else if (name.equals("-maxStates"))
+                mMaxStates = Integer.parseInt(value);
+            else if (name.equals("-queue"))
+                mQueueSize = Integer.parseInt(value);
+            else if (name.equals("-seed"))
+                mSeed = Long.parseLong(value);
+            else
+                throw new IllegalArgumentException("unknown option " + name);
+        }
+
+        if (mGoalType < Game.CELL_STATE_MIN || mGoalType >= Game.CELL_STATE_MIN + mColors)
+            throw new IllegalArgumentException("goal type must be one of the colors");
+        if (mWalk < 0)
+            mWalk = mMaxMoves * 4;
+    }
+
+    private void run() throws IOException, InterruptedException {
+
+        if (!mOutDir.isDirectory() && !mOutDir.mkdirs())
+            throw new IOException("cannot create " + mOutDir);
+
+        final BlockingQueue<Candidate> boards = new ArrayBlockingQueue<Candidate>(mQueueSize);
+        final BlockingQueue<Candidate> kept = new ArrayBlockingQueue<Candidate>(mQueueSize);
+
+        Thread maker = new Thread(new Runnable() {
+            public void run() {
+                makeBoards(boards);
+            }
+        }, "LevelGenerator-maker");
+        maker.setDaemon(true);
+        maker.start();
+
+        ExecutorService solvers = Executors.newFixedThreadPool(mThreads);
+        for (int i = 0; i < mThreads; ++i) {
+            solvers.execute(new Runnable() {
+                public void run() {
+                    solveBoards(boards, kept);
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        long deadline = mHours > 0 ? start + (long) (mHours * 3600e9) : Long.MAX_VALUE;
+        long nextReport = start + REPORT_SECONDS * 1000000000L;
+        Set<Long> written = new HashSet<Long>();
+        int count = 0;
+
+        while (count < mCount && System.nanoTime() < deadline) {
+            Candidate candidate = kept.poll(1, TimeUnit.SECONDS);
+            if (candidate != null && written.add(key(candidate.mLevel))) {
+                write(candidate, count);
+                ++count;
+            }
+
+            long now = System.nanoTime();
+            if (now >= nextReport) {
+                report(now - start, count, boards.size(), kept.size());
+                nextReport = now + REPORT_SECONDS * 1000000000L;
+            }
+        }
+
+        /* stop the stages; interrupted solvers give up at once */
+        maker.interrupt();
+        solvers.shutdownNow();
+        solvers.awaitTermination(1, TimeUnit.MINUTES);
+        report(System.nanoTime() - start, count, boards.size(), kept.size());
+    }
+
+    /* The first stage: makes random boards until interrupted */
+    private void makeBoards(BlockingQueue<Candidate> boards) {
+        Random random = new Random(mSeed);
+        try {
+            while (true) {
+                Level level = RandomLevels.create(random, mRows, mColumns, mColors, mDensity,
+                        mWalk);
+                boards.put(new Candidate(withGoalType(level, mGoalType)));
+                mMade.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            /* done */
+        }
+    }
+
+    /* The second stage: solves boards, keeping those inside the band */
+    private void solveBoards(BlockingQueue<Candidate> boards, BlockingQueue<Candidate> kept) {
+        AStarSolver solver = new AStarSolver();
+        solver.setMaxStates(mMaxStates);
+        try {
+            while (true) {
+                Candidate candidate = boards.take();
+                Solution solution = solver.solve(candidate.mLevel);
+                if (Thread.currentThread().isInterrupted())
+                    return;
+
+                SolverStats stats = solution.getStats();
+                mSolved.incrementAndGet();
+                mStatesVisited.addAndGet(stats.getStatesVisited());
+                if (!solution.isSolved())
+                    continue;
+
+                candidate.mMoves = solution.getMoveCount();
+                candidate.mBranching = stats.getStatesVisited() == 0 ? 0
+                        : (double) stats.getStatesGenerated() / stats.getStatesVisited();
+                if (candidate.mMoves < mMinMoves || candidate.mMoves > mMaxMoves)
+                    continue;
+                if (candidate.mBranching < mMinBranching || candidate.mBranching > mMaxBranching)
+                    continue;
+
+                mKept.incrementAndGet();
+                kept.put(candidate);
+            }
+        } catch (InterruptedException e) {
+            /* done */
+        }
+    }
+
+    /* The last stage: writes one level file */
+    private void write(Candidate candidate, int index) throws IOException {
+        String id = String.format("gen_%d_%05d", mSeed, index + 1);
+        Level level = new Level(id, mRows, mColumns, cells(candidate.mLevel),
+                candidate.mLevel.getFinishState(), finishCells(candidate.mLevel));
+
+        Writer out = new OutputStreamWriter(new FileOutputStream(new File(mOutDir, id
+                + ".xml")), "utf-8");
+        try {
+            LevelXml.write(level, "Level " + (index + 1) + " (" + candidate.mMoves + " moves)",
+                    "Solved!!!", out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void report(long nanos, int written, int boardsWaiting, int keptWaiting) {
+        double seconds = nanos / 1e9;
+        System.out.println(String.format(
+                "%.0fs: made %d, solved %d (%.1f/s, %.0f states/s), kept %d, written %d,"
+                        + " queued %d/%d", seconds, mMade.get(), mSolved.get(), mSolved.get()
+                        / seconds, mStatesVisited.get() / seconds, mKept.get(), written,
+                boardsWaiting, keptWaiting));
+    }
+
+    /* Makes a piece type the goal type, swapping it with the finish type */
+    private static Level withGoalType(Level level, int goalType) {
+        int[] cells = cells(level);
+        int finishState = level.getFinishState();
+        for (int i = 0; i < cells.length; ++i) {
+            if (cells[i] == finishState)
+                cells[i] = goalType;
+            else if (cells[i] == goalType)
+                cells[i] = finishState;
+        }
+        return new Level(level.getID(), level.getRows(), level.getColumns(), cells, goalType,
+                finishCells(level));
+    }
+
+    /* Identifies a level by its board and finish piece */
+    private static long key(Level level) {
+        long key = level.newPosition().getHash();
+        for (int i = 0; i < level.getFinishCellCount(); ++i)
+            key = key * 31 + level.getFinishCell(i);
+        return key;
+    }
+
+    private static int[] cells(Level level) {
+        int[] cells = new int[level.getCellCount()];
+        for (int i = 0; i < cells.length; ++i)
+            cells[i] = level.getCell(i);
+        return cells;
+    }
+
+    private static int[] finishCells(Level level) {
+        int[] cells = new int[level.getFinishCellCount()];
+        for (int i = 0; i < cells.length; ++i)
+            cells[i] = level.getFinishCell(i);
+        return cells;
+    }
+}
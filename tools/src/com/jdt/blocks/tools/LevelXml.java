@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jdt.blocks.tools;
+
+import com.jdt.blocks.Game;
+import com.jdt.blocks.solver.Level;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes levels as game definition XML, the format of res/xml/game1.xml that
+ * GameParser reads.
+ *
+ * @author Tom
+ */
+public final class LevelXml {
+
+    /* colors of piece types 1, 2, ..., used in turn */
+    private static final String[] COLORS = { "#ff0000", "#00ff00", "#ffd700", "#1e90ff",
+            "#ff8c00", "#9932cc", "#00ced1", "#ff69b4" };
+
+    private LevelXml() {
+    }
+
+    /**
+     * Writes a level
+     *
+     * @param level the level; its id becomes the game id
+     * @param name the game name, for the UI
+     * @param message the message shown when the level is finished
+     * @param out receives the XML, not closed
+     */
+    public static void write(Level level, String name, String message, Writer out)
+            throws IOException {
+
+        int columns = level.getColumns();
+        int maxState = level.getFinishState();
+
+        out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+        out.write("<game>\n");
+        out.write("\t<name>" + escape(name) + "</name>\n");
+        out.write("\t<id>" + escape(level.getID()) + "</id>\n");
+
+        out.write("\t<board>\n");
+        out.write("\t\t<size>" + level.getRows() + "," + columns + "</size>\n");
+        for (int i = 0; i < level.getCellCount(); ++i) {
+            int state = level.getCell(i);
+            if (state < Game.CELL_STATE_MIN)
+                continue;
+            maxState = Math.max(maxState, state);
+            out.write("\t\t<cell>" + (i / columns) + "," + (i % columns) + "," + state
+                    + "</cell>\n");
+        }
+        out.write("\t</board>\n");
+
+        out.write("\t<colors>\n");
+        for (int state = Game.CELL_STATE_MIN; state <= maxState; ++state) {
+            out.write("\t\t<color type=\"" + state + "\" value=\""
+                    + COLORS[(state - Game.CELL_STATE_MIN) % COLORS.length] + "\"/>\n");
+        }
+        out.write("\t</colors>\n");
+
+        out.write("\t<finish>\n");
+        out.write("\t\t<message>" + escape(message) + "</message>\n");
+        out.write("\t\t<piece type=\"" + level.getFinishState() + "\">\n");
+        for (int i = 0; i < level.getFinishCellCount(); ++i) {
+            int cell = level.getFinishCell(i);
+            out.write("\t\t\t<cell>" + (cell / columns) + "," + (cell % columns) + "</cell>\n");
+        }
+        out.write("\t\t</piece>\n");
+        out.write("\t</finish>\n");
+        out.write("</game>\n");
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
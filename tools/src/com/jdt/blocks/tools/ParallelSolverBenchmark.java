@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.tools;
+
+import com.jdt.blocks.solver.BreadthFirstSolver;
+import com.jdt.blocks.solver.Level;
+import com.jdt.blocks.solver.ParallelSolver;
+import com.jdt.blocks.solver.Solution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how the ParallelSolver scales with the number of threads. A set of
+ * random solvable levels, each needing at least a given number of states to solve, is
+ * solved with 1, 2, 4 ... up to the given number of threads, and the speedup
+ * and efficiency over one thread are reported. Every solution length is
+ * checked against the single threaded BreadthFirstSolver.
+ *
+ * Usage: ParallelSolverBenchmark [-threads n] [-levels n] [-size n]
+ * [-minStates n] [-runs n] [-seed n]
+ *
+ * @author Tom
+ */
+public final class ParallelSolverBenchmark {
+
+    private ParallelSolverBenchmark() {
+    }
+
+    public static void main(String[] args) {
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        int levelCount = 4;
+        int size = 8;
+        int minStates = 50000;
+        int runs = 3;
+        long seed = 1;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String name = args[i];
+            long value = Long.parseLong(args[i + 1]);
+            if (name.equals("-threads"))
+                threads = (int) value;
+            else if (name.equals("-levels"))
+                levelCount = (int) value;
+            else if (name.equals("-size"))
+                size = (int) value;
+            else if (name.equals("-minStates"))
+                minStates = (int) value;
+            else if (name.equals("-runs"))
+                runs = (int) value;
+            else if (name.equals("-seed"))
+                seed = value;
+            else
+                throw new IllegalArgumentException("unknown option " + name);
+        }
+
+        /* pick levels that are big enough to be worth splitting up */
+        Random random = new Random(seed);
+        List<Level> levels = new ArrayList<Level>();
+        List<Integer> lengths = new ArrayList<Integer>();
+        while (levels.size() < levelCount) {
+            Level level = RandomLevels.create(random, size, size, 3, 30, size * 4);
+            Solution solution = new BreadthFirstSolver().solve(level);
+            if (!solution.isSolved() || solution.getStats().getStatesVisited() < minStates)
+                continue;
+            levels.add(level);
+            lengths.add(solution.getMoveCount());
+            System.out.println("level " + levels.size() + ": " + solution.getMoveCount()
+                    + " moves, " + solution.getStats());
+        }
+
+        System.out.println();
+        System.out.println("threads      time ms   speedup  efficiency");
+
+        double baseline = 0;
+        for (int n = 1; n <= threads; n = nextThreadCount(n, threads)) {
+            ForkJoinPool pool = new ForkJoinPool(n);
+            ParallelSolver solver = new ParallelSolver(pool);
+
+            /* one untimed pass to warm up, then the best of the timed runs */
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run <= runs; ++run) {
+                long start = System.nanoTime();
+                for (int i = 0; i < levels.size(); ++i) {
+                    Solution solution = solver.solve(levels.get(i));
+                    if (solution.getMoveCount() != lengths.get(i))
+                        throw new IllegalStateException("level " + (i + 1) + " solved in "
+                                + solution.getMoveCount() + " moves, expected " + lengths.get(i));
+                }
+                if (run > 0)
+                    best = Math.min(best, System.nanoTime() - start);
+            }
+            pool.shutdown();
+
+            double millis = best / 1e6;
+            if (n == 1)
+                baseline = millis;
+            double speedup = baseline / millis;
+            System.out.println(String.format("%7d %12.1f %9.2f %10.0f%%", n, millis, speedup,
+                    100 * speedup / n));
+        }
+    }
+
+    /* Doubles the thread count, ending with the maximum */
+    private static int nextThreadCount(int n, int max) {
+        if (n == max)
+            return max + 1;
+        return Math.min(n * 2, max);
+    }
+}
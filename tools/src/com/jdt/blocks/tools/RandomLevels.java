@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2010 Tom Bruns
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jdt.blocks.tools;
+
+import com.jdt.blocks.Game;
+import com.jdt.blocks.solver.Level;
+import com.jdt.blocks.solver.Position;
+
+import java.util.Random;
+
+/**
+ * Makes random levels for tools and benchmarks. A board is filled at random,
+ * played forward a number of random moves, and one of the resulting pieces of
+ * type 1 becomes the finish piece, so the level can always be finished.
+ *
+ * @author Tom
+ */
+public final class RandomLevels {
+
+    private RandomLevels() {
+    }
+
+    /**
+     * Creates a random level
+     *
+     * @param random the random number source
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param types number of piece types
+     * @param fillPercent percentage of cells that hold a piece
+     * @param walk number of random moves played to find a finish piece
+     * @return the level, at its starting state
+     */
+    public static Level create(Random random, int rows, int columns, int types,
+            int fillPercent, int walk) {
+
+        int size = rows * columns;
+        int[] cells = new int[size];
+        int[] moves = new int[size];
+        int[] piece = new int[size];
+
+        while (true) {
+            for (int i = 0; i < size; ++i)
+                cells[i] = random.nextInt(100) < fillPercent ? Game.CELL_STATE_MIN
+                        + random.nextInt(types) : Game.CELL_EMPTY;
+
+            /* the finish piece is not known yet, any will do for playing */
+            Level start = new Level("random", rows, columns, cells, Game.CELL_STATE_MIN,
+                    new int[] { 0 });
+            Position position = start.newPosition();
+            for (int i = 0; i < walk; ++i) {
+                int count = position.findMoves(moves);
+                if (count == 0)
+                    break;
+                position.move(moves[random.nextInt(count)]);
+            }
+
+            int pieceSize = pickPiece(random, position, rows, columns, piece);
+            if (pieceSize == 0)
+                continue;
+
+            int[] finish = new int[pieceSize];
+            System.arraycopy(piece, 0, finish, 0, pieceSize);
+            return new Level("random", rows, columns, cells, Game.CELL_STATE_MIN, finish);
+        }
+    }
+
+    /*
+     * Collects the cells of a random piece of type 1 with at least 2 cells,
+     * returning its size or 0 if there is none
+     */
+    private static int pickPiece(Random random, Position position, int rows, int columns,
+            int[] piece) {
+
+        int size = position.getCellCount();
+        int[] label = new int[size];
+        int[] stack = new int[size];
+        int pieces = 0;
+        int chosen = 0;
+
+        /* label the pieces of type 1, choosing one at random as they are found */
+        for (int start = 0; start < size; ++start) {
+            if (position.getCell(start) != Game.CELL_STATE_MIN || label[start] != 0)
+                continue;
+
+            int top = 0;
+            int count = 0;
+            label[start] = pieces + 1;
+            stack[top++] = start;
+            while (top > 0) {
+                int index = stack[--top];
+                ++count;
+                int row = index / columns;
+                int column = index % columns;
+                if (row > 0)
+                    top = push(position, label, stack, top, index - columns, pieces + 1);
+                if (row < rows - 1)
+                    top = push(position, label, stack, top, index + columns, pieces + 1);
+                if (column > 0)
+                    top = push(position, label, stack, top, index - 1, pieces + 1);
+                if (column < columns - 1)
+                    top = push(position, label, stack, top, index + 1, pieces + 1);
+            }
+
+            ++pieces;
+            if (count >= 2 && random.nextInt(pieces) == 0)
+                chosen = pieces;
+        }
+
+        int pieceSize = 0;
+        for (int i = 0; chosen != 0 && i < size; ++i) {
+            if (label[i] == chosen)
+                piece[pieceSize++] = i;
+        }
+        return pieceSize;
+    }
+
+    private static int push(Position position, int[] label, int[] stack, int top, int index,
+            int value) {
+        if (position.getCell(index) == Game.CELL_STATE_MIN && label[index] == 0) {
+            label[index] = value;
+            stack[top++] = index;
+        }
+        return top;
+    }
+}